@@ -11,8 +11,14 @@
 --
 -- OPTION 2: Use a TABLE (For MySQL or when view is too slow)
 --   - Creates a denormalized index table
---   - Requires periodic refresh via populate-index.sql
+--   - Kept current by the API plugin's index sync (or populate-index.sql)
 --   - See "INDEX TABLE" section below
+--
+-- OPTION 3: Use a MATERIALIZED VIEW (PostgreSQL, when the view is too slow)
+--   - Snapshot of the view, refreshed by the API plugin
+--   - See "MATERIALIZED VIEW" section below
+--
+-- Select the option with the API plugin's "Search Backing" setting.
 -- ============================================================================
 
 -- ============================================================================
@@ -74,6 +80,24 @@ LEFT JOIN app_fd_farm_location loc ON loc.c_parent_id = fr.id
 LEFT JOIN app_fd_md03district d ON loc.c_district = d.c_code;
 */
 
+-- ============================================================================
+-- MATERIALIZED VIEW (PostgreSQL)
+-- Refreshed with REFRESH MATERIALIZED VIEW CONCURRENTLY, which needs the
+-- unique index on id. Created empty; the plugin populates it on first refresh.
+-- ============================================================================
+
+/*
+CREATE MATERIALIZED VIEW mv_farmer_search AS
+SELECT * FROM v_farmer_search
+WITH NO DATA;
+
+CREATE UNIQUE INDEX idx_mv_fs_id ON mv_farmer_search(id);
+CREATE INDEX idx_mv_fs_national_id ON mv_farmer_search(c_national_id);
+CREATE INDEX idx_mv_fs_phone ON mv_farmer_search(c_phone_normalized);
+CREATE INDEX idx_mv_fs_district_village ON mv_farmer_search(c_district_code, c_village);
+CREATE INDEX idx_mv_fs_community_council ON mv_farmer_search(c_community_council);
+*/
+
 -- ============================================================================
 -- FUZZY MATCHING WITH pg_trgm (Recommended)
 -- Enables finding "Thabo" when searching "Tabo"
@@ -87,6 +111,14 @@ CREATE EXTENSION IF NOT EXISTS pg_trgm;
 CREATE INDEX idx_farmer_search_name_trgm
 ON app_fd_farmerBasicInfo
 USING gin((LOWER(c_first_name || ' ' || c_last_name)) gin_trgm_ops);
+
+-- Name searches run three separate queries (search name LIKE, soundex LIKE,
+-- first/last name % similarity). On a PostgreSQL index table each can use
+-- its own trigram index:
+CREATE INDEX idx_fss_search_name_trgm ON app_fd_farmer_search_index USING gin(c_search_name gin_trgm_ops);
+CREATE INDEX idx_fss_soundex_trgm ON app_fd_farmer_search_index USING gin(c_name_soundex gin_trgm_ops);
+CREATE INDEX idx_fss_first_name_trgm ON app_fd_farmer_search_index USING gin(LOWER(c_first_name) gin_trgm_ops);
+CREATE INDEX idx_fss_last_name_trgm ON app_fd_farmer_search_index USING gin(LOWER(c_last_name) gin_trgm_ops);
 */
 
 -- ============================================================================
@@ -169,6 +201,10 @@ CREATE TABLE IF NOT EXISTS app_fd_farmer_search_index (
 -- Pre-computed statistics for client-side confidence estimation
 -- ============================================================================
 
+-- Written by StatisticsService: row 'GLOBAL' holds the current snapshot;
+-- row 'GLOBAL_REFRESH_LEASE' records which node is recomputing it
+-- (c_version = node token, c_generated_at = lease expiry).
+-- PostgreSQL: use TEXT for c_stats_json and drop the ENGINE clause.
 CREATE TABLE IF NOT EXISTS app_fd_farmer_search_stats (
     -- Primary Key (e.g., 'GLOBAL', 'DISTRICT_BEREA', etc.)
     id VARCHAR(50) PRIMARY KEY,
@@ -0,0 +1,60 @@
+package global.govstack.smartsearch.api;
+
+import global.govstack.smartsearch.benchmark.SyntheticFarmers;
+import global.govstack.smartsearch.service.FarmerSearchService.FarmerResult;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response Formatting Benchmark
+ *
+ * Cost of turning a page of results into the /search response body:
+ * formatFarmer per row, the JSONObject wrapper and its serialization.
+ * Lives in the api package to reach the package-private formatter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseFormattingBenchmark {
+
+    @Param({"1", "20"})
+    public int pageSize;
+
+    private SmartSearchApiPlugin plugin;
+    private List<FarmerResult> page;
+
+    @Setup
+    public void setup() {
+        plugin = new SmartSearchApiPlugin();
+        page = SyntheticFarmers.candidates(SyntheticFarmers.generate(SyntheticFarmers.DEFAULT_SIZE), pageSize, 3L);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> formatFarmers() {
+        List<Map<String, Object>> farmers = new ArrayList<>(page.size());
+        for (FarmerResult farmer : page) {
+            farmers.add(plugin.formatFarmer(farmer));
+        }
+        return farmers;
+    }
+
+    @Benchmark
+    public String formatAndSerialize() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("success", true);
+        response.put("resultType", "CRITERIA_MATCH");
+        response.put("totalCount", page.size());
+        response.put("farmers", formatFarmers());
+        response.put("searchTime", 0L);
+        return new JSONObject(response).toString();
+    }
+}
@@ -0,0 +1,114 @@
+package global.govstack.smartsearch.benchmark;
+
+import global.govstack.smartsearch.service.FarmerSearchService.FarmerResult;
+import global.govstack.smartsearch.service.FuzzyMatchService;
+import global.govstack.smartsearch.service.NameQuery;
+import org.apache.commons.text.similarity.LevenshteinDistance;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fuzzy Match Benchmark
+ *
+ * Per-call cost of the name matching primitives over pairs drawn from the
+ * synthetic dataset. Each invocation processes BATCH pairs so the timer
+ * overhead does not dominate; results are per pair.
+ *
+ * The commons-text Levenshtein benchmark is the baseline the bounded
+ * implementation replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FuzzyMatchBenchmark {
+
+    private static final int BATCH = 1024;
+
+    private FuzzyMatchService fuzzy;
+    private LevenshteinDistance apacheLevenshtein;
+
+    private String[] searchNames;
+    private NameQuery[] nameQueries;
+    private FarmerResult[] farmers;
+
+    @Setup
+    public void setup() {
+        fuzzy = FuzzyMatchService.getInstance();
+        apacheLevenshtein = LevenshteinDistance.getDefaultInstance();
+
+        List<FarmerResult> dataset = SyntheticFarmers.generate(SyntheticFarmers.DEFAULT_SIZE);
+        farmers = SyntheticFarmers.candidates(dataset, BATCH, 1L).toArray(new FarmerResult[0]);
+        searchNames = SyntheticFarmers.searchNames(BATCH);
+        nameQueries = new NameQuery[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            nameQueries[i] = fuzzy.compileNameQuery(searchNames[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void levenshtein(Blackhole blackhole) {
+        for (int i = 0; i < BATCH; i++) {
+            blackhole.consume(fuzzy.levenshteinDistance(searchNames[i], farmers[i].getFirstName()));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void levenshteinBounded(Blackhole blackhole) {
+        for (int i = 0; i < BATCH; i++) {
+            blackhole.consume(fuzzy.levenshteinDistance(searchNames[i], farmers[i].getFirstName(), 2));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void levenshteinApacheBaseline(Blackhole blackhole) {
+        for (int i = 0; i < BATCH; i++) {
+            blackhole.consume(apacheLevenshtein.apply(searchNames[i], farmers[i].getFirstName()));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void soundex(Blackhole blackhole) {
+        for (int i = 0; i < BATCH; i++) {
+            blackhole.consume(fuzzy.soundex(farmers[i].getLastName()));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void soundexKey(Blackhole blackhole) {
+        for (int i = 0; i < BATCH; i++) {
+            blackhole.consume(fuzzy.soundexKey(farmers[i].getLastName()));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void nameRelevanceScore(Blackhole blackhole) {
+        for (int i = 0; i < BATCH; i++) {
+            FarmerResult farmer = farmers[i];
+            blackhole.consume(fuzzy.calculateNameRelevanceScore(
+                searchNames[i], farmer.getFirstName(), farmer.getLastName(), farmer.getSoundex()));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void nameRelevanceScoreCompiled(Blackhole blackhole) {
+        for (int i = 0; i < BATCH; i++) {
+            FarmerResult farmer = farmers[i];
+            blackhole.consume(fuzzy.calculateNameRelevanceScore(nameQueries[i],
+                farmer.getNormalizedFirstName(), farmer.getNormalizedLastName(),
+                farmer.getFirstNameSoundexKey(), farmer.getLastNameSoundexKey()));
+        }
+    }
+}
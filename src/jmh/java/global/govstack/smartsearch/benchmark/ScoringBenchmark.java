@@ -0,0 +1,67 @@
+package global.govstack.smartsearch.benchmark;
+
+import global.govstack.smartsearch.service.FarmerSearchService;
+import global.govstack.smartsearch.service.FarmerSearchService.FarmerResult;
+import global.govstack.smartsearch.service.FarmerSearchService.SearchCriteria;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scoring Benchmark
+ *
+ * Cost of ranking one search's candidates: 50 rows from the view (SQL path),
+ * 2000 rows from the memory index, or a full scan of the 200k dataset.
+ * scoreAndRank sorts in place, so it works on a copy of the candidate list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScoringBenchmark {
+
+    private static final int RETURN_LIMIT = 20;
+
+    @Param({"50", "2000", "200000"})
+    public int candidateCount;
+
+    private FarmerSearchService searchService;
+    private List<FarmerResult> candidates;
+    private SearchCriteria[] criteria;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        searchService = FarmerSearchService.getInstance();
+        List<FarmerResult> dataset = SyntheticFarmers.generate(SyntheticFarmers.DEFAULT_SIZE);
+        candidates = candidateCount >= dataset.size() ? dataset :
+            SyntheticFarmers.candidates(dataset, candidateCount, 2L);
+
+        String[] names = SyntheticFarmers.searchNames(256);
+        criteria = new SearchCriteria[names.length];
+        for (int i = 0; i < names.length; i++) {
+            criteria[i] = SyntheticFarmers.criteria(names[i]);
+        }
+    }
+
+    private SearchCriteria nextCriteria() {
+        SearchCriteria c = criteria[next];
+        next = (next + 1) % criteria.length;
+        return c;
+    }
+
+    @Benchmark
+    public List<FarmerResult> scoreAndRank() {
+        List<FarmerResult> ranked = searchService.scoreAndRank(new ArrayList<>(candidates), nextCriteria());
+        return ranked.subList(0, Math.min(RETURN_LIMIT, ranked.size()));
+    }
+
+    @Benchmark
+    public List<FarmerResult> scoreAndSelectTop() {
+        return searchService.scoreAndSelectTop(candidates, nextCriteria(), RETURN_LIMIT);
+    }
+}
@@ -0,0 +1,217 @@
+package global.govstack.smartsearch.benchmark;
+
+import global.govstack.smartsearch.service.FarmerSearchService;
+import global.govstack.smartsearch.service.FarmerSearchService.FarmerResult;
+import global.govstack.smartsearch.service.FuzzyMatchService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic Farmers
+ *
+ * Deterministic farmer dataset for benchmarks. Names follow a Zipf-like
+ * distribution over common Sesotho first names and surnames, so a few names
+ * ("Thabo", "Mokoena") dominate as they do in the registry, and about one in
+ * ten names uses an alternative spelling (Ntsoaki/Ntswaki, Tšepo/Tsepo,
+ * Mamosa/Mmamosa, Thabo/Tabo) so fuzzy matching has real work to do.
+ *
+ * Rows carry the same precomputed scoring columns as rows mapped from the
+ * search view.
+ */
+public final class SyntheticFarmers {
+
+    public static final int DEFAULT_SIZE = 200_000;
+    private static final long SEED = 20240517L;
+
+    static final String[] FIRST_NAMES = {
+        "Thabo", "Mpho", "Lerato", "Palesa", "Teboho", "Lineo", "Mamosa", "Nthabiseng",
+        "Tšepo", "Refiloe", "Limpho", "Motlatsi", "Rethabile", "Puleng", "Mathabo", "Ntsoaki",
+        "Lieketseng", "Keketso", "Tumelo", "Lehlohonolo", "Relebohile", "Mosa", "Kananelo", "Nthati",
+        "Bokang", "Lebohang", "Mohau", "Nkopane", "Seabata", "Tankiso", "Hlompho", "Karabo",
+        "Mahlompho", "Nonkosi", "Lisebo", "Masechaba", "Matšeliso", "Tlotliso", "Khotso", "Moeketsi"
+    };
+
+    static final String[] LAST_NAMES = {
+        "Mokoena", "Mohapi", "Motlomelo", "Molapo", "Letsie", "Mofokeng", "Ramokhele", "Sekhesa",
+        "Makara", "Lebona", "Nthunya", "Moshoeshoe", "Thamae", "Mokhothu", "Lerotholi", "Masupha",
+        "Tšabalala", "Mokete", "Ramakatsa", "Phafane", "Sehloho", "Khoabane", "Matete", "Seeiso",
+        "Mahase", "Mphutlane", "Lekhanya", "Ntšekhe", "Rantšo", "Maqelepo", "Mothibeli", "Posholi"
+    };
+
+    // Lesotho districts: code, name
+    static final String[][] DISTRICTS = {
+        {"BER", "Berea"}, {"BUT", "Butha-Buthe"}, {"LEI", "Leribe"}, {"MAF", "Mafeteng"},
+        {"MSU", "Maseru"}, {"MHK", "Mohale's Hoek"}, {"MOK", "Mokhotlong"}, {"QAC", "Qacha's Nek"},
+        {"QUT", "Quthing"}, {"TTK", "Thaba-Tseka"}
+    };
+
+    static final String[] VILLAGE_STEMS = {
+        "Matala", "Mabote", "Foso", "Thetsane", "Khubetsoana", "Ts'enola", "Mokhalinyane", "Pitseng",
+        "Sekamaneng", "Lithabaneng", "Masianokeng", "Qoaling", "Ratjomose", "Tsosane", "Koro-Koro", "Nazareth"
+    };
+
+    private SyntheticFarmers() {
+    }
+
+    /**
+     * Generate farmers with a fixed seed
+     *
+     * @param size Number of farmers
+     * @return Farmers with scoring columns populated
+     */
+    public static List<FarmerResult> generate(int size) {
+        FuzzyMatchService fuzzy = FuzzyMatchService.getInstance();
+        Random random = new Random(SEED);
+        double[] firstWeights = zipfWeights(FIRST_NAMES.length);
+        double[] lastWeights = zipfWeights(LAST_NAMES.length);
+
+        List<FarmerResult> farmers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String first = variant(FIRST_NAMES[pick(random, firstWeights)], random);
+            String last = variant(LAST_NAMES[pick(random, lastWeights)], random);
+            String[] district = DISTRICTS[random.nextInt(DISTRICTS.length)];
+            String village = "Ha " + VILLAGE_STEMS[random.nextInt(VILLAGE_STEMS.length)];
+            String nationalId = String.format("%013d", Math.abs(random.nextLong()) % 10_000_000_000_000L);
+            String phone = "+266" + (5 + random.nextInt(2)) + String.format("%07d", random.nextInt(10_000_000));
+
+            FarmerResult farmer = new FarmerResult();
+            farmer.setId("F" + i);
+            farmer.setNationalId(nationalId);
+            farmer.setNationalIdMasked("..." + nationalId.substring(nationalId.length() - 4));
+            farmer.setFirstName(first);
+            farmer.setLastName(last);
+            farmer.setGender(random.nextBoolean() ? "Female" : "Male");
+            farmer.setDateOfBirth((1950 + random.nextInt(55)) + "-0" + (1 + random.nextInt(9)) + "-1" + random.nextInt(10));
+            farmer.setPhone(phone);
+            farmer.setPhoneMasked("..." + phone.substring(phone.length() - 4));
+            farmer.setDistrictCode(district[0]);
+            farmer.setDistrictName(district[1]);
+            farmer.setVillage(village);
+            farmer.setCommunityCouncil(district[1] + " CC" + (1 + random.nextInt(6)));
+            farmer.setCooperativeName(random.nextInt(3) == 0 ? village + " Farmers Cooperative" : null);
+            farmer.setSourceRecordId("S" + i);
+            farmer.setSoundex(fuzzy.generateFullNameSoundex(first, last));
+
+            farmer.setNormalizedFirstName(first.toLowerCase().trim());
+            farmer.setNormalizedLastName(last.toLowerCase().trim());
+            farmer.setFirstNameSoundexKey(fuzzy.soundexKey(first));
+            farmer.setLastNameSoundexKey(fuzzy.soundexKey(last));
+            farmers.add(farmer);
+        }
+        return farmers;
+    }
+
+    /**
+     * Search names as typed by enumerators: mostly known names, some misspelt,
+     * some full names
+     */
+    public static String[] searchNames(int count) {
+        Random random = new Random(SEED + 1);
+        double[] firstWeights = zipfWeights(FIRST_NAMES.length);
+        double[] lastWeights = zipfWeights(LAST_NAMES.length);
+
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            String first = FIRST_NAMES[pick(random, firstWeights)];
+            String last = LAST_NAMES[pick(random, lastWeights)];
+            switch (random.nextInt(4)) {
+                case 0:
+                    names[i] = first;
+                    break;
+                case 1:
+                    names[i] = last;
+                    break;
+                case 2:
+                    names[i] = first + " " + last;
+                    break;
+                default:
+                    names[i] = typo(first, random);
+                    break;
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Build a criteria-search candidate list of the given size (as returned by the view or memory index)
+     */
+    public static List<FarmerResult> candidates(List<FarmerResult> farmers, int size, long seed) {
+        Random random = new Random(seed);
+        List<FarmerResult> candidates = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            candidates.add(farmers.get(random.nextInt(farmers.size())));
+        }
+        return candidates;
+    }
+
+    /**
+     * Criteria for a name search within a district and village
+     */
+    public static FarmerSearchService.SearchCriteria criteria(String name) {
+        FarmerSearchService.SearchCriteria criteria = new FarmerSearchService.SearchCriteria();
+        criteria.setName(name);
+        criteria.setDistrictCode("BER");
+        criteria.setVillage("Ha Matala");
+        return criteria;
+    }
+
+    /**
+     * Alternative spellings seen in the registry (about 10% of names)
+     */
+    private static String variant(String name, Random random) {
+        if (random.nextInt(10) != 0) {
+            return name;
+        }
+        switch (random.nextInt(4)) {
+            case 0:
+                return name.replace("oa", "wa").replace("oe", "we");
+            case 1:
+                return name.replace("š", "s");
+            case 2:
+                return name.startsWith("Ma") ? "M" + name : name.replace("ts", "tj");
+            default:
+                return name.replace("Th", "T").replace("th", "t");
+        }
+    }
+
+    /**
+     * Single-character typo: drop, double or swap
+     */
+    private static String typo(String name, Random random) {
+        int position = 1 + random.nextInt(name.length() - 2);
+        switch (random.nextInt(3)) {
+            case 0:
+                return name.substring(0, position) + name.substring(position + 1);
+            case 1:
+                return name.substring(0, position) + name.charAt(position) + name.substring(position);
+            default:
+                return name.substring(0, position) + name.charAt(position + 1) + name.charAt(position) +
+                    name.substring(position + 2);
+        }
+    }
+
+    private static double[] zipfWeights(int n) {
+        double[] cumulative = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += 1.0 / (i + 1);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= total;
+        }
+        return cumulative;
+    }
+
+    private static int pick(Random random, double[] cumulative) {
+        double r = random.nextDouble();
+        for (int i = 0; i < cumulative.length; i++) {
+            if (r < cumulative[i]) {
+                return i;
+            }
+        }
+        return cumulative.length - 1;
+    }
+}
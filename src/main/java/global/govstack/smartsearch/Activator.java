@@ -1,8 +1,13 @@
 package global.govstack.smartsearch;
 
 import global.govstack.smartsearch.api.SmartSearchApiPlugin;
+import global.govstack.smartsearch.api.SmartSearchExport;
 import global.govstack.smartsearch.element.SmartSearchElement;
 import global.govstack.smartsearch.element.SmartSearchResources;
+import global.govstack.smartsearch.service.FarmerSearchService;
+import global.govstack.smartsearch.service.IndexBackingService;
+import global.govstack.smartsearch.service.IndexSyncService;
+import global.govstack.smartsearch.service.StatisticsService;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceRegistration;
@@ -17,6 +22,7 @@ import java.util.Collection;
  * - SmartSearchResources: Static file serving for CSS/JS
  * - SmartSearchElement: Form element for farmer search
  * - SmartSearchApiPlugin: REST API endpoints for search
+ * - SmartSearchExport: Streaming NDJSON/CSV export of filter matches
  */
 public class Activator implements BundleActivator {
 
@@ -46,6 +52,16 @@ public class Activator implements BundleActivator {
             new SmartSearchApiPlugin(),
             null
         ));
+
+        // Register the Smart Search Export (streams filter matches as NDJSON/CSV)
+        registrationList.add(context.registerService(
+            SmartSearchExport.class.getName(),
+            new SmartSearchExport(),
+            null
+        ));
+
+        // Restore the memory index snapshot so searches are fast right after a redeploy
+        FarmerSearchService.getInstance().warmUp();
     }
 
     @Override
@@ -53,5 +69,11 @@ public class Activator implements BundleActivator {
         for (ServiceRegistration registration : registrationList) {
             registration.unregister();
         }
+
+        // Stop background index threads so they don't outlive the bundle
+        IndexBackingService.getInstance().shutdown();
+        IndexSyncService.getInstance().shutdown();
+        FarmerSearchService.getInstance().shutdown();
+        StatisticsService.getInstance().shutdown();
     }
 }
@@ -2,6 +2,12 @@ package global.govstack.smartsearch.api;
 
 import global.govstack.smartsearch.service.FarmerSearchService;
 import global.govstack.smartsearch.service.FarmerSearchService.*;
+import global.govstack.smartsearch.service.FarmerIdCache;
+import global.govstack.smartsearch.service.FarmerIndex;
+import global.govstack.smartsearch.service.IndexBackingService;
+import global.govstack.smartsearch.service.IndexSyncService;
+import global.govstack.smartsearch.service.QueryTemplates;
+import global.govstack.smartsearch.service.SearchResultCache;
 import global.govstack.smartsearch.service.StatisticsService;
 import global.govstack.smartsearch.service.StatisticsService.Statistics;
 import org.joget.api.annotations.Operation;
@@ -23,8 +29,12 @@ import java.util.*;
  * 
  * Provides REST API endpoints for farmer search:
  * - POST /search - Main search endpoint
+ * - POST /search/batch - Many searches in one request
  * - GET /lookup/{id} - Single farmer lookup by index ID
+ * - GET/POST /lookup - Multi-get by index IDs
  * - GET /villages - Villages autocomplete (filtered by district)
+ * - POST /index/refresh/{id} - Re-read one farmer into the memory index
+ * - GET /status - Memory index, result cache and index sync status
  * 
  * Uses API Builder plugin architecture.
  */
@@ -117,6 +127,8 @@ public class SmartSearchApiPlugin extends ApiPluginAbstract {
         long startTime = System.currentTimeMillis();
         
         try {
+            applySettings();
+            
             // Parse search criteria from request body
             SearchCriteria criteria = parseSearchCriteria(body);
             
@@ -128,17 +140,7 @@ public class SmartSearchApiPlugin extends ApiPluginAbstract {
             SearchResult result = searchService.search(criteria);
             
             // Format response
-            Map<String, Object> response = new LinkedHashMap<>();
-            response.put("success", result.isSuccess());
-            response.put("resultType", result.getResultType().toString());
-            response.put("totalCount", result.getTotalCount());
-            
-            // Format farmer results
-            List<Map<String, Object>> farmers = new ArrayList<>();
-            for (FarmerResult farmer : result.getFarmers()) {
-                farmers.add(formatFarmer(farmer));
-            }
-            response.put("farmers", farmers);
+            Map<String, Object> response = formatSearchResult(result);
             response.put("searchTime", System.currentTimeMillis() - startTime);
             
             // Add suggestions for no results
@@ -159,6 +161,75 @@ public class SmartSearchApiPlugin extends ApiPluginAbstract {
         }
     }
     
+    /**
+     * POST /search/batch - Run many searches in one request
+     */
+    @Operation(
+        path = "/search/batch",
+        type = Operation.MethodType.POST,
+        summary = "Batch search for farmers",
+        description = "Runs an array of search criteria in parallel and returns one result per item, in order, " +
+            "with per-item timing and errors. Body: {\"searches\": [{\"criteria\": {...}, \"limit\": 20}, ...]}"
+    )
+    @Responses({
+        @Response(responseCode = 200, description = "Batch processed (check each item's success)"),
+        @Response(responseCode = 400, description = "Missing or oversized searches array"),
+        @Response(responseCode = 500, description = "Internal server error")
+    })
+    public ApiResponse searchBatch(
+            @Param(value = "body", description = "Array of search criteria") JSONObject body) {
+        
+        long startTime = System.currentTimeMillis();
+        
+        try {
+            applySettings();
+            
+            JSONArray searches = body != null ? body.optJSONArray("searches") : null;
+            if (searches == null || searches.length() == 0) {
+                return errorResponse(400, "No searches provided");
+            }
+            if (searches.length() > FarmerSearchService.MAX_BATCH_SIZE) {
+                return errorResponse(400, "At most " + FarmerSearchService.MAX_BATCH_SIZE + " searches per batch");
+            }
+            
+            List<SearchCriteria> criteriaList = new ArrayList<>();
+            for (int i = 0; i < searches.length(); i++) {
+                JSONObject item = searches.optJSONObject(i);
+                criteriaList.add(item != null ? parseSearchCriteria(item) : null);
+            }
+            
+            List<SearchResult> results = searchService.searchBatch(criteriaList);
+            
+            List<Map<String, Object>> items = new ArrayList<>();
+            int failed = 0;
+            for (int i = 0; i < results.size(); i++) {
+                SearchResult result = results.get(i);
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("index", i);
+                item.putAll(formatSearchResult(result));
+                item.put("searchTime", result.getSearchTimeMs());
+                if (!result.isSuccess()) {
+                    item.put("error", result.getErrorMessage());
+                    failed++;
+                }
+                items.add(item);
+            }
+            
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("success", true);
+            response.put("count", items.size());
+            response.put("failed", failed);
+            response.put("results", items);
+            response.put("searchTime", System.currentTimeMillis() - startTime);
+            
+            return new ApiResponse(200, new JSONObject(response));
+            
+        } catch (Exception e) {
+            LogUtil.error(CLASS_NAME, e, "Batch search failed");
+            return errorResponse(500, "Batch search failed: " + e.getMessage());
+        }
+    }
+    
     /**
      * GET /lookup/{id} - Lookup single farmer by index ID
      */
@@ -181,6 +252,7 @@ public class SmartSearchApiPlugin extends ApiPluginAbstract {
                 return errorResponse(400, "Farmer ID is required");
             }
             
+            applySettings();
             FarmerResult farmer = searchService.getFarmerById(id);
             
             if (farmer == null) {
@@ -199,6 +271,99 @@ public class SmartSearchApiPlugin extends ApiPluginAbstract {
         }
     }
     
+    /**
+     * GET /lookup?ids=a,b,c - Lookup many farmers by index ID
+     */
+    @Operation(
+        path = "/lookup",
+        type = Operation.MethodType.GET,
+        summary = "Get farmers by IDs",
+        description = "Retrieve many farmer records by index ID in one request (comma-separated ids)"
+    )
+    @Responses({
+        @Response(responseCode = 200, description = "Found farmers keyed by ID, with the IDs not found"),
+        @Response(responseCode = 400, description = "No IDs or too many IDs"),
+        @Response(responseCode = 500, description = "Internal server error")
+    })
+    public ApiResponse lookupMany(
+            @Param(value = "ids", description = "Comma-separated farmer index IDs") String ids) {
+        
+        return lookupIds(ids != null ? Arrays.asList(ids.split(",")) : Collections.emptyList());
+    }
+    
+    /**
+     * POST /lookup - Lookup many farmers by index ID (for ID lists too long for a URL)
+     */
+    @Operation(
+        path = "/lookup",
+        type = Operation.MethodType.POST,
+        summary = "Get farmers by IDs",
+        description = "Retrieve many farmer records by index ID in one request. Body: {\"ids\": [\"...\", ...]}"
+    )
+    @Responses({
+        @Response(responseCode = 200, description = "Found farmers keyed by ID, with the IDs not found"),
+        @Response(responseCode = 400, description = "No IDs or too many IDs"),
+        @Response(responseCode = 500, description = "Internal server error")
+    })
+    public ApiResponse lookupManyPost(
+            @Param(value = "body", description = "Farmer index IDs") JSONObject body) {
+        
+        List<String> ids = new ArrayList<>();
+        JSONArray array = body != null ? body.optJSONArray("ids") : null;
+        if (array != null) {
+            for (int i = 0; i < array.length(); i++) {
+                ids.add(array.optString(i, null));
+            }
+        }
+        return lookupIds(ids);
+    }
+    
+    /**
+     * Shared multi-get: farmers keyed by ID plus the IDs that were not found
+     */
+    private ApiResponse lookupIds(List<String> ids) {
+        try {
+            Set<String> requested = new LinkedHashSet<>();
+            for (String id : ids) {
+                if (id != null && !id.trim().isEmpty()) {
+                    requested.add(id.trim());
+                }
+            }
+            if (requested.isEmpty()) {
+                return errorResponse(400, "Farmer IDs are required");
+            }
+            if (requested.size() > FarmerSearchService.MAX_LOOKUP_IDS) {
+                return errorResponse(400, "At most " + FarmerSearchService.MAX_LOOKUP_IDS + " IDs per lookup");
+            }
+            
+            applySettings();
+            Map<String, FarmerResult> found = searchService.getFarmersByIds(requested);
+            
+            Map<String, Object> farmers = new LinkedHashMap<>();
+            for (Map.Entry<String, FarmerResult> entry : found.entrySet()) {
+                farmers.put(entry.getKey(), formatFarmer(entry.getValue()));
+            }
+            List<String> missing = new ArrayList<>();
+            for (String id : requested) {
+                if (!found.containsKey(id)) {
+                    missing.add(id);
+                }
+            }
+            
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("success", true);
+            response.put("count", farmers.size());
+            response.put("farmers", farmers);
+            response.put("missing", missing);
+            
+            return new ApiResponse(200, new JSONObject(response));
+            
+        } catch (Exception e) {
+            LogUtil.error(CLASS_NAME, e, "Multi-get lookup failed");
+            return errorResponse(500, "Lookup failed: " + e.getMessage());
+        }
+    }
+    
     /**
      * GET /villages - Villages autocomplete
      */
@@ -217,6 +382,8 @@ public class SmartSearchApiPlugin extends ApiPluginAbstract {
             @Param(value = "q", required = false, description = "Search query") String query) {
         
         try {
+            applySettings();
+            
             List<Map<String, Object>> villages = searchService.getVillages(district, query);
             
             Map<String, Object> response = new LinkedHashMap<>();
@@ -248,6 +415,8 @@ public class SmartSearchApiPlugin extends ApiPluginAbstract {
             @Param(value = "district", required = false, description = "District code filter") String district) {
         
         try {
+            applySettings();
+            
             List<Map<String, Object>> councils = searchService.getCommunityCouncils(district);
             
             Map<String, Object> response = new LinkedHashMap<>();
@@ -280,6 +449,8 @@ public class SmartSearchApiPlugin extends ApiPluginAbstract {
             @Param(value = "q", required = false, description = "Search query") String query) {
         
         try {
+            applySettings();
+            
             List<Map<String, Object>> cooperatives = searchService.getCooperatives(district, query);
             
             Map<String, Object> response = new LinkedHashMap<>();
@@ -314,6 +485,8 @@ public class SmartSearchApiPlugin extends ApiPluginAbstract {
         long startTime = System.currentTimeMillis();
         
         try {
+            applySettings();
+            
             if (nationalId == null || nationalId.trim().isEmpty()) {
                 return errorResponse(400, "National ID is required");
             }
@@ -360,6 +533,8 @@ public class SmartSearchApiPlugin extends ApiPluginAbstract {
         long startTime = System.currentTimeMillis();
         
         try {
+            applySettings();
+            
             if (phone == null || phone.trim().isEmpty()) {
                 return errorResponse(400, "Phone number is required");
             }
@@ -403,6 +578,8 @@ public class SmartSearchApiPlugin extends ApiPluginAbstract {
             @Param(value = "refresh", required = false, description = "Force refresh statistics (bypass cache)") String refresh) {
         
         try {
+            applySettings();
+            
             Statistics stats;
             
             // Check if refresh is requested
@@ -418,6 +595,18 @@ public class SmartSearchApiPlugin extends ApiPluginAbstract {
             response.put("statistics", stats.toJson());
             response.put("cache_age_ms", statisticsService.getCacheAgeMs());
             response.put("is_stale", statisticsService.isStale());
+            response.put("source", statisticsService.getSnapshotSource());
+            response.put("is_refreshing", statisticsService.isRefreshing());
+            response.put("last_refresh_ms", statisticsService.getLastRefreshDurationMs());
+            response.put("next_refresh_at", statisticsService.getNextScheduledRefreshAt());
+            response.put("refresh_failures", statisticsService.getRefreshFailures());
+            response.put("persisted_at", statisticsService.getLastPersistedAt());
+            response.put("last_reconcile_at", statisticsService.getLastReconcileAt());
+            response.put("live_changes_applied", statisticsService.getLiveChangesApplied());
+            if (statisticsService.getLastError() != null) {
+                response.put("last_refresh_error", statisticsService.getLastError());
+                response.put("last_refresh_failed_at", statisticsService.getLastFailureAt());
+            }
             
             return new ApiResponse(200, new JSONObject(response));
             
@@ -427,10 +616,177 @@ public class SmartSearchApiPlugin extends ApiPluginAbstract {
         }
     }
     
+    /**
+     * POST /index/refresh/{id} - Re-read one farmer into the memory index
+     */
+    @Operation(
+        path = "/index/refresh/{id}",
+        type = Operation.MethodType.POST,
+        summary = "Refresh farmer in memory index",
+        description = "Re-read a farmer from the search view after its source records change and drop cached search results for its location"
+    )
+    @Responses({
+        @Response(responseCode = 200, description = "Farmer refreshed"),
+        @Response(responseCode = 400, description = "Farmer ID is required"),
+        @Response(responseCode = 500, description = "Internal server error")
+    })
+    public ApiResponse refreshIndex(
+            @Param(value = "id", description = "Farmer index ID") String id) {
+        
+        try {
+            if (id == null || id.trim().isEmpty()) {
+                return errorResponse(400, "Farmer ID is required");
+            }
+            
+            applySettings();
+            boolean exists = searchService.refreshFarmer(id);
+            
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("success", true);
+            response.put("indexReady", searchService.isMemoryIndexReady());
+            response.put("exists", exists);
+            
+            return new ApiResponse(200, new JSONObject(response));
+            
+        } catch (Exception e) {
+            LogUtil.error(CLASS_NAME, e, "Index refresh failed");
+            return errorResponse(500, "Index refresh failed: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * GET /status - Memory index and result cache status
+     */
+    @Operation(
+        path = "/status",
+        type = Operation.MethodType.GET,
+        summary = "Get search engine status",
+        description = "Returns memory index state, result cache counters and index sync lag/throughput"
+    )
+    @Responses({
+        @Response(responseCode = 200, description = "Status returned"),
+        @Response(responseCode = 500, description = "Internal server error")
+    })
+    public ApiResponse status() {
+        
+        try {
+            applySettings();
+            
+            Map<String, Object> index = new LinkedHashMap<>();
+            FarmerIndex farmerIndex = searchService.getMemoryIndex();
+            index.put("ready", farmerIndex != null);
+            if (farmerIndex != null) {
+                index.put("farmers", farmerIndex.getFarmerCount());
+                index.put("nameTerms", farmerIndex.getNameTermCount());
+                index.put("loadedAt", farmerIndex.getLoadedAt());
+            }
+            
+            SearchResultCache resultCache = searchService.getResultCache();
+            Map<String, Object> cache = new LinkedHashMap<>();
+            cache.put("size", resultCache.getSize());
+            cache.put("maxEntries", resultCache.getMaxEntries());
+            cache.put("ttlMs", resultCache.getTtlMs());
+            cache.put("hits", resultCache.getHits());
+            cache.put("misses", resultCache.getMisses());
+            cache.put("hitRate", resultCache.getHitRate());
+            cache.put("evictions", resultCache.getEvictions());
+            cache.put("expirations", resultCache.getExpirations());
+            cache.put("invalidations", resultCache.getInvalidations());
+            
+            FarmerIdCache idCache = searchService.getFarmerIdCache();
+            Map<String, Object> farmerCache = new LinkedHashMap<>();
+            farmerCache.put("size", idCache.getSize());
+            farmerCache.put("maxEntries", idCache.getMaxEntries());
+            farmerCache.put("hits", idCache.getHits());
+            farmerCache.put("misses", idCache.getMisses());
+            farmerCache.put("hitRate", idCache.getHitRate());
+            
+            QueryTemplates templates = searchService.getQueryTemplates();
+            Map<String, Object> queryTemplates = new LinkedHashMap<>();
+            queryTemplates.put("compiled", templates.getTemplateCount());
+            queryTemplates.put("hits", templates.getHits());
+            queryTemplates.put("misses", templates.getMisses());
+            queryTemplates.put("hitRate", templates.getHitRate());
+            
+            IndexBackingService backingService = IndexBackingService.getInstance();
+            Map<String, Object> backing = new LinkedHashMap<>();
+            backing.put("mode", backingService.getMode().toString());
+            backing.put("searchTable", backingService.getSearchTable());
+            backing.put("refreshPending", backingService.isRefreshPending());
+            backing.put("refreshIntervalMinutes", backingService.getRefreshIntervalMinutes());
+            backing.put("stalenessMs", backingService.getStalenessMs());
+            backing.put("lastRefreshAt", backingService.getLastRefreshAt());
+            backing.put("lastRefreshDurationMs", backingService.getLastRefreshDurationMs());
+            backing.put("refreshesCompleted", backingService.getRefreshesCompleted());
+            backing.put("refreshesFailed", backingService.getRefreshesFailed());
+            backing.put("lastError", backingService.getLastError());
+            
+            IndexSyncService indexSync = IndexSyncService.getInstance();
+            Map<String, Object> sync = new LinkedHashMap<>();
+            sync.put("intervalMinutes", indexSync.getIntervalMinutes());
+            sync.put("watermark", indexSync.getWatermark());
+            sync.put("lagMs", indexSync.getLagMs());
+            sync.put("lastRunAt", indexSync.getLastRunAt());
+            sync.put("lastRunDurationMs", indexSync.getLastRunDurationMs());
+            sync.put("lastRunRows", indexSync.getLastRunRows());
+            sync.put("lastRunRowsPerSecond", indexSync.getLastRunThroughput());
+            sync.put("rowsUpserted", indexSync.getRowsUpserted());
+            sync.put("rowsDeleted", indexSync.getRowsDeleted());
+            sync.put("runsCompleted", indexSync.getRunsCompleted());
+            sync.put("runsFailed", indexSync.getRunsFailed());
+            sync.put("lastError", indexSync.getLastError());
+            
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("success", true);
+            response.put("memoryIndex", index);
+            response.put("resultCache", cache);
+            response.put("farmerCache", farmerCache);
+            response.put("queryTemplates", queryTemplates);
+            response.put("indexBacking", backing);
+            response.put("indexSync", sync);
+            
+            return new ApiResponse(200, new JSONObject(response));
+            
+        } catch (Exception e) {
+            LogUtil.error(CLASS_NAME, e, "Get status failed");
+            return errorResponse(500, "Failed to get status: " + e.getMessage());
+        }
+    }
+    
     // =========================================================================
     // HELPER METHODS
     // =========================================================================
     
+    /**
+     * Propagate plugin properties to the search service
+     */
+    private void applySettings() {
+        boolean memoryIndex = "true".equalsIgnoreCase(getPropertyString("enableMemoryIndex"));
+        int syncIntervalMinutes = parseInt(getPropertyString("indexSyncIntervalMinutes"), 0);
+        searchService.setMemoryIndexEnabled(memoryIndex);
+        // Cached results are only invalidated by a change feed (index sync or memory index refreshes)
+        boolean changeFeed = memoryIndex || syncIntervalMinutes > 0;
+        searchService.setResultCacheTtlSeconds(changeFeed ? parseInt(getPropertyString("resultCacheTtlSeconds"), 0) : 0);
+        IndexSyncService.getInstance().setSyncIntervalMinutes(syncIntervalMinutes);
+        IndexBackingService.getInstance().configure(
+            IndexBackingService.Mode.parse(getPropertyString("indexBackingMode")),
+            parseInt(getPropertyString("indexRefreshIntervalMinutes"), 15));
+    }
+    
+    /**
+     * Parse an integer property, falling back to a default when blank or invalid
+     */
+    private int parseInt(String value, int defaultValue) {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+    
     /**
      * Parse search criteria from JSON request body
      */
@@ -465,9 +821,29 @@ public class SmartSearchApiPlugin extends ApiPluginAbstract {
     }
     
     /**
-     * Format farmer result for JSON response
+     * Format the common part of a search response: status, type, count and farmers
+     */
+    private Map<String, Object> formatSearchResult(SearchResult result) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("success", result.isSuccess());
+        response.put("resultType", result.getResultType().toString());
+        response.put("totalCount", result.getTotalCount());
+        if (!result.isComplete()) {
+            response.put("complete", false);
+        }
+        
+        List<Map<String, Object>> farmers = new ArrayList<>();
+        for (FarmerResult farmer : result.getFarmers()) {
+            farmers.add(formatFarmer(farmer));
+        }
+        response.put("farmers", farmers);
+        return response;
+    }
+    
+    /**
+     * Format farmer result for JSON response (package-private for benchmarks)
      */
-    private Map<String, Object> formatFarmer(FarmerResult farmer) {
+    Map<String, Object> formatFarmer(FarmerResult farmer) {
         Map<String, Object> map = new LinkedHashMap<>();
 
         map.put("id", farmer.getId());
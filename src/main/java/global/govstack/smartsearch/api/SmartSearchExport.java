@@ -0,0 +1,138 @@
+package global.govstack.smartsearch.api;
+
+import global.govstack.smartsearch.service.FarmerExportService;
+import global.govstack.smartsearch.service.FarmerExportService.Format;
+import global.govstack.smartsearch.service.FarmerSearchService.SearchCriteria;
+import org.joget.commons.util.LogUtil;
+import org.joget.plugin.base.ExtDefaultPlugin;
+import org.joget.plugin.base.PluginProperty;
+import org.joget.plugin.base.PluginWebSupport;
+import org.joget.workflow.model.service.WorkflowUserManager;
+import org.joget.workflow.util.WorkflowUtil;
+import org.json.JSONObject;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Smart Search Export
+ *
+ * Streams all farmers matching the criteria filters as NDJSON or CSV.
+ * API Builder operations return a buffered ApiResponse, so the export is
+ * served as a plugin web service instead. Admin only.
+ *
+ * This plugin has no settings of its own. It reads whatever search backing
+ * the Smart Farmer Search API last applied, which is the live view until
+ * an API operation has run since the server started.
+ *
+ * Access via: /jw/web/json/plugin/global.govstack.smartsearch.api.SmartSearchExport/service
+ *     ?format=ndjson|csv&communityCouncil=xxx&after=<last id>&limit=n
+ */
+public class SmartSearchExport extends ExtDefaultPlugin implements PluginWebSupport {
+
+    private static final String CLASS_NAME = SmartSearchExport.class.getName();
+
+    @Override
+    public String getName() {
+        return "Smart Search Export";
+    }
+
+    @Override
+    public String getVersion() {
+        return "8.1-SNAPSHOT";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Streams farmer search index rows matching filters as NDJSON or CSV";
+    }
+
+    @Override
+    public PluginProperty[] getPluginProperties() {
+        return null;
+    }
+
+    @Override
+    public Object execute(Map properties) {
+        return null;
+    }
+
+    @Override
+    public void webService(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        if (!WorkflowUtil.isCurrentUserInRole(WorkflowUserManager.ROLE_ADMIN)) {
+            sendError(response, HttpServletResponse.SC_FORBIDDEN, "Export requires an administrator");
+            return;
+        }
+
+        if (isNotEmpty(request.getParameter("name"))) {
+            sendError(response, HttpServletResponse.SC_BAD_REQUEST,
+                "Name search is ranked and capped; export supports filter criteria only");
+            return;
+        }
+
+        Format format = "csv".equalsIgnoreCase(request.getParameter("format")) ? Format.CSV : Format.NDJSON;
+
+        long limit = 0;
+        if (isNotEmpty(request.getParameter("limit"))) {
+            try {
+                limit = Math.max(0, Long.parseLong(request.getParameter("limit").trim()));
+            } catch (NumberFormatException e) {
+                sendError(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid limit");
+                return;
+            }
+        }
+
+        SearchCriteria criteria = new SearchCriteria();
+        criteria.setDistrictCode(request.getParameter("districtCode"));
+        criteria.setDistrictName(request.getParameter("districtName"));
+        criteria.setVillage(request.getParameter("village"));
+        criteria.setCommunityCouncil(request.getParameter("communityCouncil"));
+        criteria.setCooperative(request.getParameter("cooperative"));
+        criteria.setPartialId(request.getParameter("partialId"));
+        criteria.setPartialPhone(request.getParameter("partialPhone"));
+
+        if (format == Format.CSV) {
+            response.setContentType("text/csv; charset=utf-8");
+            response.setHeader("Content-Disposition", "attachment; filename=\"farmers.csv\"");
+        } else {
+            response.setContentType("application/x-ndjson; charset=utf-8");
+            response.setHeader("Content-Disposition", "attachment; filename=\"farmers.ndjson\"");
+        }
+        response.setHeader("Cache-Control", "no-store");
+
+        try {
+            Writer out = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+            FarmerExportService.getInstance().export(criteria, request.getParameter("after"), limit, format, out);
+            out.flush();
+        } catch (Exception e) {
+            LogUtil.error(CLASS_NAME, e, "Export failed");
+            // Once rows are on the wire the client resumes from the last id it received
+            if (!response.isCommitted()) {
+                response.reset();
+                sendError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Export failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void sendError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json; charset=utf-8");
+        JSONObject error = new JSONObject();
+        error.put("success", false);
+        error.put("error", message);
+        response.getWriter().write(error.toString());
+    }
+
+    private boolean isNotEmpty(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+}
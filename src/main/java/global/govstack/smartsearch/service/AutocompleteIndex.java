@@ -0,0 +1,236 @@
+package global.govstack.smartsearch.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Autocomplete Index
+ *
+ * Immutable in-memory dictionaries behind the villages, community councils
+ * and cooperatives autocomplete. Each dictionary holds, per district and for
+ * all districts together, the distinct values with their farmer counts in an
+ * array sorted by lowercased value, so a prefix lookup is a binary search plus
+ * a scan over the matching range.
+ *
+ * Built from one GROUP BY per column; FarmerSearchService rebuilds it in the
+ * background and swaps the reference, so readers need no locking.
+ */
+class AutocompleteIndex {
+
+    private final Terms villages;
+    private final Terms communityCouncils;
+    private final Terms cooperatives;
+    private final long loadedAt;
+
+    private AutocompleteIndex(Terms villages, Terms communityCouncils, Terms cooperatives) {
+        this.villages = villages;
+        this.communityCouncils = communityCouncils;
+        this.cooperatives = cooperatives;
+        this.loadedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Build the dictionaries from the search view
+     *
+     * @param conn Database connection
+     * @param indexTable Search view name
+     * @return Loaded index
+     */
+    static AutocompleteIndex load(Connection conn, String indexTable) throws SQLException {
+        return new AutocompleteIndex(
+            Terms.load(conn, indexTable, "c_village"),
+            Terms.load(conn, indexTable, "c_community_council"),
+            Terms.load(conn, indexTable, "c_cooperative_name"));
+    }
+
+    // =========================================================================
+    // LOOKUPS
+    // =========================================================================
+
+    /**
+     * Villages starting with the query (case-insensitive), most farmers first
+     */
+    List<Map<String, Object>> villages(String districtCode, String query, int limit) {
+        return villages.forDistrict(districtCode).prefix(fold(query), limit);
+    }
+
+    /**
+     * All community councils of a district in name order
+     */
+    List<Map<String, Object>> communityCouncils(String districtCode, int limit) {
+        return communityCouncils.forDistrict(districtCode).alphabetical(limit);
+    }
+
+    /**
+     * Cooperatives containing the query (case-insensitive), most farmers first
+     */
+    List<Map<String, Object>> cooperatives(String districtCode, String query, int limit) {
+        return cooperatives.forDistrict(districtCode).contains(fold(query), limit);
+    }
+
+    long getLoadedAt() {
+        return loadedAt;
+    }
+
+    private static String fold(String value) {
+        return value != null ? value.trim().toLowerCase() : "";
+    }
+
+    // =========================================================================
+    // DICTIONARIES
+    // =========================================================================
+
+    /**
+     * One column's values: a sorted array for all districts plus one per district
+     */
+    private static final class Terms {
+        private static final SortedCounts EMPTY = new SortedCounts(new HashMap<>());
+
+        private final SortedCounts all;
+        private final Map<String, SortedCounts> byDistrict;
+
+        private Terms(SortedCounts all, Map<String, SortedCounts> byDistrict) {
+            this.all = all;
+            this.byDistrict = byDistrict;
+        }
+
+        static Terms load(Connection conn, String indexTable, String column) throws SQLException {
+            String sql = "SELECT c_district_code, " + column + ", COUNT(*) AS farmer_count FROM " + indexTable +
+                " WHERE " + column + " IS NOT NULL AND " + column + " != ''" +
+                " GROUP BY c_district_code, " + column;
+
+            Map<String, Integer> allCounts = new HashMap<>();
+            Map<String, Map<String, Integer>> districtCounts = new HashMap<>();
+
+            try (PreparedStatement ps = conn.prepareStatement(sql);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String district = rs.getString(1);
+                    String value = rs.getString(2);
+                    int count = rs.getInt(3);
+
+                    allCounts.merge(value, count, Integer::sum);
+                    if (district != null) {
+                        districtCounts.computeIfAbsent(district, k -> new HashMap<>())
+                            .merge(value, count, Integer::sum);
+                    }
+                }
+            }
+
+            Map<String, SortedCounts> byDistrict = new HashMap<>();
+            for (Map.Entry<String, Map<String, Integer>> entry : districtCounts.entrySet()) {
+                byDistrict.put(entry.getKey(), new SortedCounts(entry.getValue()));
+            }
+            return new Terms(new SortedCounts(allCounts), byDistrict);
+        }
+
+        /**
+         * Values for an exact district code, or for all districts when blank
+         */
+        SortedCounts forDistrict(String districtCode) {
+            if (districtCode == null || districtCode.trim().isEmpty()) {
+                return all;
+            }
+            SortedCounts counts = byDistrict.get(districtCode.trim());
+            return counts != null ? counts : EMPTY;
+        }
+    }
+
+    /**
+     * Distinct values with farmer counts, sorted by lowercased value
+     */
+    private static final class SortedCounts {
+        private final String[] names;
+        private final String[] keys;
+        private final int[] counts;
+
+        SortedCounts(Map<String, Integer> values) {
+            String[] sorted = values.keySet().toArray(new String[0]);
+            Arrays.sort(sorted, Comparator.comparing((String name) -> name.toLowerCase())
+                .thenComparing(Comparator.naturalOrder()));
+
+            names = sorted;
+            keys = new String[sorted.length];
+            counts = new int[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                keys[i] = sorted[i].toLowerCase();
+                counts[i] = values.get(sorted[i]);
+            }
+        }
+
+        /**
+         * Values starting with prefix, highest count first (ties in name order)
+         */
+        List<Map<String, Object>> prefix(String prefix, int limit) {
+            TopKSelector<Integer> top = new TopKSelector<>(limit);
+            for (int i = lowerBound(prefix); i < keys.length && keys[i].startsWith(prefix); i++) {
+                top.offer(counts[i], i);
+            }
+            return toMaps(top.toSortedList());
+        }
+
+        /**
+         * Values containing the query, highest count first (ties in name order)
+         */
+        List<Map<String, Object>> contains(String query, int limit) {
+            if (query.isEmpty()) {
+                return prefix(query, limit);
+            }
+            TopKSelector<Integer> top = new TopKSelector<>(limit);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i].contains(query)) {
+                    top.offer(counts[i], i);
+                }
+            }
+            return toMaps(top.toSortedList());
+        }
+
+        /**
+         * First values in name order
+         */
+        List<Map<String, Object>> alphabetical(int limit) {
+            List<Integer> positions = new ArrayList<>();
+            for (int i = 0; i < keys.length && i < limit; i++) {
+                positions.add(i);
+            }
+            return toMaps(positions);
+        }
+
+        /**
+         * First position whose key is not less than the prefix
+         */
+        private int lowerBound(String prefix) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid].compareTo(prefix) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private List<Map<String, Object>> toMaps(List<Integer> positions) {
+            List<Map<String, Object>> result = new ArrayList<>(positions.size());
+            for (int position : positions) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("name", names[position]);
+                item.put("count", counts[position]);
+                result.add(item);
+            }
+            return result;
+        }
+    }
+}
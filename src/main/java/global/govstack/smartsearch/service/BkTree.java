@@ -0,0 +1,166 @@
+package global.govstack.smartsearch.service;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+
+/**
+ * BK-Tree
+ *
+ * Metric tree over distinct name terms keyed by Levenshtein distance.
+ * Each child edge is labelled with the distance between parent and child,
+ * so a search for terms within distance k of a query only descends into
+ * children labelled d-k..d+k (triangle inequality), where d is the
+ * query's distance to the current node.
+ *
+ * Enumerates every term within k edits of the query, so recall is exact and
+ * cost depends on the number of distinct names rather than the number of rows.
+ *
+ * Terms are expected lowercased. Not thread-safe: the owning FarmerIndex
+ * guards it with its read/write lock.
+ */
+class BkTree {
+
+    private Node root;
+    private int size = 0;
+
+    /**
+     * Add a term
+     *
+     * @param termId Term id to report on match
+     * @param term Term text (lowercased)
+     */
+    void add(int termId, String term) {
+        size++;
+        if (root == null) {
+            root = new Node(termId, term);
+            return;
+        }
+
+        int[] previous = new int[term.length() + 1];
+        int[] current = new int[term.length() + 1];
+
+        Node node = root;
+        while (true) {
+            int distance = distance(term, node.term, previous, current);
+            if (distance == 0) {
+                // Same text under another id; terms are distinct so this is defensive
+                return;
+            }
+            Node child = node.child(distance);
+            if (child == null) {
+                node.addChild(distance, new Node(termId, term));
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Find all terms within maxDistance edits of the query
+     *
+     * @param query Query text (lowercased)
+     * @param maxDistance Maximum edit distance (inclusive)
+     * @return Ids of matching terms
+     */
+    BitSet search(String query, int maxDistance) {
+        BitSet matches = new BitSet();
+        if (root == null || query == null) {
+            return matches;
+        }
+
+        // Row buffers reused across every node of this search
+        int[] previous = new int[query.length() + 1];
+        int[] current = new int[query.length() + 1];
+
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            int distance = distance(query, node.term, previous, current);
+            if (distance <= maxDistance) {
+                matches.set(node.termId);
+            }
+
+            int low = distance - maxDistance;
+            int high = distance + maxDistance;
+            for (int i = 0; i < node.childCount; i++) {
+                int edge = node.childDistances[i];
+                if (edge >= low && edge <= high) {
+                    pending.push(node.children[i]);
+                }
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * Number of terms in the tree
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Levenshtein distance using caller-supplied rows sized a.length() + 1
+     */
+    private static int distance(String a, String b, int[] previous, int[] current) {
+        int n = a.length();
+        for (int i = 0; i <= n; i++) {
+            previous[i] = i;
+        }
+
+        for (int j = 1; j <= b.length(); j++) {
+            char cb = b.charAt(j - 1);
+            current[0] = j;
+            for (int i = 1; i <= n; i++) {
+                int cost = a.charAt(i - 1) == cb ? 0 : 1;
+                current[i] = Math.min(Math.min(current[i - 1] + 1, previous[i] + 1), previous[i - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        return previous[n];
+    }
+
+    /**
+     * Tree node with children keyed by edge distance
+     */
+    private static final class Node {
+        private final int termId;
+        private final String term;
+        private int[] childDistances = new int[0];
+        private Node[] children = new Node[0];
+        private int childCount = 0;
+
+        Node(int termId, String term) {
+            this.termId = termId;
+            this.term = term;
+        }
+
+        Node child(int distance) {
+            for (int i = 0; i < childCount; i++) {
+                if (childDistances[i] == distance) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        void addChild(int distance, Node child) {
+            if (childCount == children.length) {
+                int capacity = Math.max(4, childCount * 2);
+                childDistances = Arrays.copyOf(childDistances, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            childDistances[childCount] = distance;
+            children[childCount] = child;
+            childCount++;
+        }
+    }
+}
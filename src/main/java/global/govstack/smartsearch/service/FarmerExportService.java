@@ -0,0 +1,196 @@
+package global.govstack.smartsearch.service;
+
+import global.govstack.smartsearch.service.FarmerSearchService.SearchCriteria;
+import org.joget.apps.app.service.AppUtil;
+import org.joget.commons.util.LogUtil;
+import org.json.JSONObject;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Farmer Export Service
+ *
+ * Streams every farmer matching the exact criteria filters (district,
+ * village, community council, cooperative, partial ID/phone) as NDJSON or
+ * CSV, for distribution runs that need whole councils or cooperatives
+ * rather than the top 20 search results.
+ *
+ * Rows are read in keyset order (id) in chunks of CHUNK_SIZE, each chunk a
+ * short forward-only query that resumes after the last id written, and are
+ * written to the output as they are read. Memory use does not grow with the
+ * export size, and an interrupted or limited export is continued by passing
+ * the id of the last row received as the cursor.
+ */
+public class FarmerExportService {
+
+    private static final String CLASS_NAME = FarmerExportService.class.getName();
+
+    private static final int CHUNK_SIZE = 5000;
+    private static final int FETCH_SIZE = 1000;
+
+    // Exported columns and their field names (full, unmasked values)
+    private static final String[] COLUMNS = {
+        "id", "c_national_id", "c_first_name", "c_last_name", "c_gender", "c_date_of_birth",
+        "c_phone_display", "c_district_code", "c_district_name", "c_village", "c_community_council",
+        "c_cooperative_name", "c_source_record_id"
+    };
+    private static final String[] FIELDS = {
+        "id", "nationalId", "firstName", "lastName", "gender", "dateOfBirth",
+        "phone", "districtCode", "districtName", "village", "communityCouncil",
+        "cooperativeName", "sourceRecordId"
+    };
+
+    /**
+     * Export formats
+     */
+    public enum Format {
+        NDJSON,
+        CSV
+    }
+
+    // Export SQL per criteria shape, for the first chunk and for chunks after a cursor
+    private final QueryTemplates fromStart = new QueryTemplates(String.join(", ", COLUMNS), " ORDER BY id LIMIT ?");
+    private final QueryTemplates afterCursor = new QueryTemplates(String.join(", ", COLUMNS), " AND id > ? ORDER BY id LIMIT ?");
+
+    // Singleton
+    private static FarmerExportService instance;
+
+    private FarmerExportService() {
+    }
+
+    public static synchronized FarmerExportService getInstance() {
+        if (instance == null) {
+            instance = new FarmerExportService();
+        }
+        return instance;
+    }
+
+    /**
+     * Stream matching farmers to a writer
+     *
+     * @param criteria Exact filters (name is ignored)
+     * @param afterId Keyset cursor: export rows with an id after this one (null from the start)
+     * @param maxRows Maximum rows to write; 0 for all
+     * @param format Output format
+     * @param out Destination (flushed after every chunk)
+     * @return Number of rows written
+     */
+    public long export(SearchCriteria criteria, String afterId, long maxRows, Format format, Writer out)
+            throws SQLException, IOException {
+
+        long startTime = System.currentTimeMillis();
+        long written = 0;
+        String cursor = afterId != null && !afterId.trim().isEmpty() ? afterId.trim() : null;
+        int shape = QueryTemplates.shapeOf(criteria);
+        String table = IndexBackingService.getInstance().getSearchTable();  // One relation for the whole export
+
+        if (format == Format.CSV) {
+            writeCsvRow(out, FIELDS);
+        }
+
+        DataSource ds = (DataSource) AppUtil.getApplicationContext().getBean("setupDataSource");
+        try (Connection conn = ds.getConnection()) {
+            // PostgreSQL only honours fetchSize outside auto-commit
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                while (maxRows <= 0 || written < maxRows) {
+                    int chunkLimit = maxRows > 0 ? (int) Math.min(CHUNK_SIZE, maxRows - written) : CHUNK_SIZE;
+                    int chunkRows = 0;
+                    String lastId = cursor;
+
+                    QueryTemplates.Template template = (cursor != null ? afterCursor : fromStart).get(table, shape);
+
+                    try (PreparedStatement ps = conn.prepareStatement(template.getSql(),
+                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                        ps.setFetchSize(FETCH_SIZE);
+                        int index = template.bind(ps, criteria, null, null);
+                        if (cursor != null) {
+                            ps.setString(index++, cursor);
+                        }
+                        ps.setInt(index, chunkLimit);
+
+                        try (ResultSet rs = ps.executeQuery()) {
+                            String[] values = new String[COLUMNS.length];
+                            while (rs.next()) {
+                                for (int i = 0; i < COLUMNS.length; i++) {
+                                    values[i] = rs.getString(COLUMNS[i]);
+                                }
+                                if (format == Format.CSV) {
+                                    writeCsvRow(out, values);
+                                } else {
+                                    writeJsonRow(out, values);
+                                }
+                                lastId = values[0];
+                                chunkRows++;
+                            }
+                        }
+                    }
+                    conn.commit();
+
+                    written += chunkRows;
+                    out.flush();
+                    if (chunkRows < chunkLimit) {
+                        break;
+                    }
+                    cursor = lastId;
+                }
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+
+        LogUtil.info(CLASS_NAME, "Exported " + written + " farmers as " + format + " in " +
+            (System.currentTimeMillis() - startTime) + "ms");
+        return written;
+    }
+
+    // =========================================================================
+    // ROW WRITERS
+    // =========================================================================
+
+    private static void writeJsonRow(Writer out, String[] values) throws IOException {
+        out.write('{');
+        for (int i = 0; i < FIELDS.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write('"');
+            out.write(FIELDS[i]);
+            out.write("\":");
+            out.write(values[i] != null ? JSONObject.quote(values[i]) : "null");
+        }
+        out.write("}\n");
+    }
+
+    /**
+     * RFC 4180 row: fields with commas, quotes or line breaks are quoted
+     */
+    private static void writeCsvRow(Writer out, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            String value = values[i];
+            if (value == null) {
+                continue;
+            }
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 ||
+                value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                out.write('"');
+                out.write(value.replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(value);
+            }
+        }
+        out.write("\r\n");
+    }
+}
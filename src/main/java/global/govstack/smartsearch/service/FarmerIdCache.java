@@ -0,0 +1,136 @@
+package global.govstack.smartsearch.service;
+
+import global.govstack.smartsearch.service.FarmerSearchService.FarmerResult;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Farmer ID Cache
+ *
+ * Read-through LRU cache of farmers by index ID for /lookup while the
+ * memory index is off. Only found farmers are cached, so a farmer created
+ * after a miss shows up on the next lookup. Entries expire after the result
+ * cache TTL and are dropped by refreshFarmer() when the farmer changes.
+ */
+public class FarmerIdCache {
+
+    private final int maxEntries;
+    private volatile long ttlMs;
+
+    private final LinkedHashMap<String, Entry> entries;
+
+    // Counters
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // Bumped by every invalidation so a read that started earlier cannot cache a stale farmer
+    private final AtomicLong generation = new AtomicLong();
+
+    FarmerIdCache(int maxEntries, long ttlMs) {
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > FarmerIdCache.this.maxEntries;
+            }
+        };
+    }
+
+    // =========================================================================
+    // CACHE OPERATIONS
+    // =========================================================================
+
+    /**
+     * @return Cached farmer, or null on miss or expiry
+     */
+    FarmerResult get(String id) {
+        synchronized (entries) {
+            Entry entry = entries.get(id);
+            if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+                entries.remove(id);
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.farmer;
+        }
+    }
+
+    /**
+     * Current invalidation generation; read before querying the farmers being cached
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Cache a farmer unless an invalidation happened since the read started
+     */
+    void put(FarmerResult farmer, long startGeneration) {
+        if (ttlMs <= 0) {
+            return;
+        }
+        Entry entry = new Entry(farmer, System.currentTimeMillis() + ttlMs);
+        synchronized (entries) {
+            if (generation.get() == startGeneration) {
+                entries.put(farmer.getId(), entry);
+            }
+        }
+    }
+
+    void invalidate(String id) {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.remove(id);
+        }
+    }
+
+    void invalidateAll() {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    void setTtlMs(long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    // =========================================================================
+    // STATUS
+    // =========================================================================
+
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getMaxEntries() { return maxEntries; }
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+
+    /**
+     * Hit rate over all lookups (0.0 when nothing was looked up yet)
+     */
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    private static final class Entry {
+        private final FarmerResult farmer;
+        private final long expiresAt;
+
+        Entry(FarmerResult farmer, long expiresAt) {
+            this.farmer = farmer;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,979 @@
+package global.govstack.smartsearch.service;
+
+import global.govstack.smartsearch.service.FarmerSearchService.FarmerResult;
+import global.govstack.smartsearch.service.FarmerSearchService.SearchCriteria;
+import global.govstack.smartsearch.service.phonetic.PhoneticEncoder;
+import org.joget.commons.util.LogUtil;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * Farmer Index
+ *
+ * Resident, column-oriented copy of the farmer search projection.
+ * Each column is a plain array indexed by row number; the low-cardinality
+ * location columns (district, village, community council, cooperative) are
+ * dictionary-encoded into int codes so filters compare ints, not strings.
+ * First and last names share a lowercased name-term dictionary, and a
+ * TrigramIndex over those terms answers the fuzzy name predicate without
+ * computing similarity row by row. A BkTree over the same terms enumerates
+ * every name within a small edit distance of each query token, and
+ * per-encoder phonetic code tables map each term's precomputed codes to
+ * term ids. Rows whose name is within edit distance of, or sounds like, a
+ * query token are returned ahead of looser substring/trigram matches.
+ *
+ * The index is loaded once from the search view and then kept current with
+ * per-farmer upserts and removals. The database remains the source of truth:
+ * FarmerSearchService falls back to SQL whenever the index is not ready.
+ *
+ * The live rows and dictionaries can be written to and restored from a
+ * FarmerIndexSnapshot, so a restart does not have to rescan the view.
+ *
+ * Thread safety: reads share a read lock, upserts/removals take the write lock.
+ */
+public class FarmerIndex {
+
+    private static final String CLASS_NAME = FarmerIndex.class.getName();
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int LOAD_FETCH_SIZE = 2000;
+
+    // pg_trgm default similarity threshold, mirrors the SQL name clause
+    private static final double NAME_SIMILARITY_THRESHOLD = 0.3;
+
+    // Edit distance for BK-tree name candidates (short tokens allow fewer edits)
+    private static final int MAX_NAME_EDIT_DISTANCE = 2;
+    private static final int SHORT_NAME_LENGTH = 4;
+
+    // Projection loaded from the search view
+    static final String COLUMNS = "id, c_national_id, c_phone_normalized, c_phone_display, " +
+        "c_first_name, c_last_name, c_gender, c_date_of_birth, c_district_code, c_district_name, " +
+        "c_village, c_community_council, c_cooperative_name, c_search_name, c_name_soundex, " +
+        "c_source_record_id";
+
+    private final FuzzyMatchService fuzzyService;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Row bookkeeping
+    private int size = 0;
+    private int liveCount = 0;
+    private final Map<String, Integer> rowById = new HashMap<>();
+    private final RowSet liveRows = new RowSet();
+
+    // Plain columns
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private String[] nationalIds = new String[INITIAL_CAPACITY];
+    private String[] phonesNormalized = new String[INITIAL_CAPACITY];
+    private String[] phonesDisplay = new String[INITIAL_CAPACITY];
+    private String[] firstNames = new String[INITIAL_CAPACITY];
+    private String[] lastNames = new String[INITIAL_CAPACITY];
+    private String[] genders = new String[INITIAL_CAPACITY];
+    private String[] datesOfBirth = new String[INITIAL_CAPACITY];
+    private String[] searchNames = new String[INITIAL_CAPACITY];
+    private String[] soundexCodes = new String[INITIAL_CAPACITY];
+    private String[] sourceRecordIds = new String[INITIAL_CAPACITY];
+
+    // Dictionary-encoded columns
+    private int[] districtCodes = new int[INITIAL_CAPACITY];
+    private int[] districtNames = new int[INITIAL_CAPACITY];
+    private int[] villages = new int[INITIAL_CAPACITY];
+    private int[] councils = new int[INITIAL_CAPACITY];
+    private int[] cooperatives = new int[INITIAL_CAPACITY];
+    private int[] firstNameTerms = new int[INITIAL_CAPACITY];
+    private int[] lastNameTerms = new int[INITIAL_CAPACITY];
+
+    private final Dictionary districtCodeDict = new Dictionary();
+    private final Dictionary districtNameDict = new Dictionary();
+    private final Dictionary villageDict = new Dictionary();
+    private final Dictionary councilDict = new Dictionary();
+    private final Dictionary cooperativeDict = new Dictionary();
+    private final Dictionary nameTermDict = new Dictionary();
+
+    // Packed Soundex key per name term
+    private int[] termSoundexKeys = new int[INITIAL_CAPACITY];
+
+    // Row bitmaps per filter value and per name term
+    private final Postings districtCodeRows = new Postings();
+    private final Postings districtNameRows = new Postings();
+    private final Postings villageRows = new Postings();
+    private final Postings councilRows = new Postings();
+    private final Postings cooperativeRows = new Postings();
+    private final Postings nameTermRows = new Postings();
+
+    // Digit n-grams for partialId / partialPhone
+    private final SubstringIndex nationalIdGrams = new SubstringIndex();
+    private final SubstringIndex phoneGrams = new SubstringIndex();
+
+    // Trigram postings and edit-distance tree over nameTermDict
+    private final TrigramIndex nameTrigrams = new TrigramIndex();
+    private final BkTree nameTree = new BkTree();
+    private final List<PhoneticTable> phoneticTables = new ArrayList<>();
+
+    private long loadedAt = 0;
+
+    FarmerIndex(FuzzyMatchService fuzzyService) {
+        this.fuzzyService = fuzzyService;
+        for (PhoneticEncoder encoder : fuzzyService.getPhoneticEncoders()) {
+            phoneticTables.add(new PhoneticTable(encoder));
+        }
+    }
+
+    // =========================================================================
+    // LOADING AND MAINTENANCE
+    // =========================================================================
+
+    /**
+     * Load every row of the search view into the index.
+     *
+     * @param conn Database connection
+     * @param indexTable View or table to load from
+     */
+    void load(Connection conn, String indexTable) throws SQLException {
+        long startTime = System.currentTimeMillis();
+        String sql = "SELECT " + COLUMNS + " FROM " + indexTable;
+
+        // PostgreSQL only honours fetchSize outside auto-commit
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (PreparedStatement ps = conn.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(LOAD_FETCH_SIZE);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                lock.writeLock().lock();
+                try {
+                    while (rs.next()) {
+                        upsertRow(rs);
+                    }
+                    loadedAt = System.currentTimeMillis();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        } finally {
+            conn.commit();
+            conn.setAutoCommit(autoCommit);
+        }
+
+        LogUtil.info(CLASS_NAME, "Loaded " + liveCount + " farmers into memory index in " +
+            (System.currentTimeMillis() - startTime) + "ms");
+    }
+
+    /**
+     * Reload a single farmer from the search view.
+     * Inserts, updates or removes the row depending on what the view returns.
+     *
+     * @param conn Database connection
+     * @param indexTable View or table to read from
+     * @param id Farmer index ID
+     * @return true if the farmer still exists
+     */
+    boolean refresh(Connection conn, String indexTable, String id) throws SQLException {
+        String sql = "SELECT " + COLUMNS + " FROM " + indexTable + " WHERE id = ?";
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, id);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                lock.writeLock().lock();
+                try {
+                    if (rs.next()) {
+                        upsertRow(rs);
+                        return true;
+                    }
+                    removeRow(id);
+                    return false;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove a farmer from the index
+     */
+    void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            removeRow(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Insert or overwrite the row for the current ResultSet position.
+     * Caller must hold the write lock.
+     */
+    private void upsertRow(ResultSet rs) throws SQLException {
+        String id = rs.getString("id");
+        if (id == null) {
+            return;
+        }
+
+        Integer existing = rowById.get(id);
+        int row;
+        if (existing != null) {
+            row = existing;
+            unindexRow(row);
+        } else {
+            row = size++;
+            ensureCapacity(size);
+            rowById.put(id, row);
+            liveRows.add(row);
+            liveCount++;
+        }
+
+        ids[row] = id;
+        nationalIds[row] = rs.getString("c_national_id");
+        phonesNormalized[row] = rs.getString("c_phone_normalized");
+        phonesDisplay[row] = rs.getString("c_phone_display");
+        firstNames[row] = rs.getString("c_first_name");
+        lastNames[row] = rs.getString("c_last_name");
+        genders[row] = rs.getString("c_gender");
+
+        java.sql.Date dob = rs.getDate("c_date_of_birth");
+        datesOfBirth[row] = dob != null ? dob.toString() : null;
+
+        searchNames[row] = rs.getString("c_search_name");
+        soundexCodes[row] = rs.getString("c_name_soundex");
+        sourceRecordIds[row] = rs.getString("c_source_record_id");
+
+        districtCodes[row] = districtCodeDict.encode(rs.getString("c_district_code"));
+        districtNames[row] = districtNameDict.encode(rs.getString("c_district_name"));
+        villages[row] = villageDict.encode(rs.getString("c_village"));
+        councils[row] = councilDict.encode(rs.getString("c_community_council"));
+        cooperatives[row] = cooperativeDict.encode(rs.getString("c_cooperative_name"));
+        firstNameTerms[row] = encodeNameTerm(firstNames[row]);
+        lastNameTerms[row] = encodeNameTerm(lastNames[row]);
+        indexRow(row);
+    }
+
+    /**
+     * Add a row to the postings of its filter values, name terms and digit grams.
+     * Caller must hold the write lock.
+     */
+    private void indexRow(int row) {
+        districtCodeRows.add(districtCodes[row], row);
+        districtNameRows.add(districtNames[row], row);
+        villageRows.add(villages[row], row);
+        councilRows.add(councils[row], row);
+        cooperativeRows.add(cooperatives[row], row);
+        nameTermRows.add(firstNameTerms[row], row);
+        nameTermRows.add(lastNameTerms[row], row);
+        nationalIdGrams.add(row, nationalIds[row]);
+        phoneGrams.add(row, phonesNormalized[row]);
+    }
+
+    /**
+     * Remove a row from the postings of its current values.
+     * Caller must hold the write lock.
+     */
+    private void unindexRow(int row) {
+        districtCodeRows.remove(districtCodes[row], row);
+        districtNameRows.remove(districtNames[row], row);
+        villageRows.remove(villages[row], row);
+        councilRows.remove(councils[row], row);
+        cooperativeRows.remove(cooperatives[row], row);
+        nameTermRows.remove(firstNameTerms[row], row);
+        nameTermRows.remove(lastNameTerms[row], row);
+        nationalIdGrams.remove(row, nationalIds[row]);
+        phoneGrams.remove(row, phonesNormalized[row]);
+    }
+
+    /**
+     * Encode a name into the shared name-term dictionary, indexing new terms.
+     * Terms are lowercased and trimmed, so each distinct normalized name is
+     * stored once and shared by every row that carries it.
+     * Caller must hold the write lock.
+     */
+    private int encodeNameTerm(String name) {
+        if (name == null) {
+            return Dictionary.NULL_CODE;
+        }
+        String term = name.toLowerCase().trim();
+        int before = nameTermDict.size();
+        int code = nameTermDict.encode(term);
+        if (code == before) {
+            if (code >= termSoundexKeys.length) {
+                termSoundexKeys = Arrays.copyOf(termSoundexKeys, termSoundexKeys.length * 2);
+            }
+            termSoundexKeys[code] = fuzzyService.soundexKey(term);
+            nameTrigrams.add(code, term);
+            nameTree.add(code, term);
+            for (PhoneticTable table : phoneticTables) {
+                table.add(code, term);
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Tombstone a row. Row numbers are never reused until the next full load.
+     * Caller must hold the write lock.
+     */
+    private void removeRow(String id) {
+        Integer row = rowById.remove(id);
+        if (row == null) {
+            return;
+        }
+        unindexRow(row);
+        liveRows.remove(row);
+        liveCount--;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(required, ids.length * 2);
+
+        ids = Arrays.copyOf(ids, capacity);
+        nationalIds = Arrays.copyOf(nationalIds, capacity);
+        phonesNormalized = Arrays.copyOf(phonesNormalized, capacity);
+        phonesDisplay = Arrays.copyOf(phonesDisplay, capacity);
+        firstNames = Arrays.copyOf(firstNames, capacity);
+        lastNames = Arrays.copyOf(lastNames, capacity);
+        genders = Arrays.copyOf(genders, capacity);
+        datesOfBirth = Arrays.copyOf(datesOfBirth, capacity);
+        searchNames = Arrays.copyOf(searchNames, capacity);
+        soundexCodes = Arrays.copyOf(soundexCodes, capacity);
+        sourceRecordIds = Arrays.copyOf(sourceRecordIds, capacity);
+
+        districtCodes = Arrays.copyOf(districtCodes, capacity);
+        districtNames = Arrays.copyOf(districtNames, capacity);
+        villages = Arrays.copyOf(villages, capacity);
+        councils = Arrays.copyOf(councils, capacity);
+        cooperatives = Arrays.copyOf(cooperatives, capacity);
+        firstNameTerms = Arrays.copyOf(firstNameTerms, capacity);
+        lastNameTerms = Arrays.copyOf(lastNameTerms, capacity);
+    }
+
+    // =========================================================================
+    // SNAPSHOT SERIALIZATION
+    // =========================================================================
+
+    /**
+     * Write dictionaries and live rows. Tombstoned rows are dropped, so a
+     * restored index is compacted. Derived structures (trigram postings,
+     * BK-tree, phonetic tables, row bitmaps) are not written: they are
+     * rebuilt from the name terms and rows on restore.
+     *
+     * @param out Snapshot payload stream
+     */
+    void writeSnapshot(DataOutput out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeLong(loadedAt);
+
+            for (Dictionary dictionary : snapshotDictionaries()) {
+                out.writeInt(dictionary.size());
+                for (int i = 0; i < dictionary.size(); i++) {
+                    writeString(out, dictionary.decode(i));
+                }
+            }
+
+            out.writeInt(liveCount);
+            RowSet.Cursor cursor = liveRows.cursor();
+            for (int row = cursor.next(); row >= 0; row = cursor.next()) {
+                writeString(out, ids[row]);
+                writeString(out, nationalIds[row]);
+                writeString(out, phonesNormalized[row]);
+                writeString(out, phonesDisplay[row]);
+                writeString(out, firstNames[row]);
+                writeString(out, lastNames[row]);
+                writeString(out, genders[row]);
+                writeString(out, datesOfBirth[row]);
+                writeString(out, searchNames[row]);
+                writeString(out, soundexCodes[row]);
+                writeString(out, sourceRecordIds[row]);
+
+                out.writeInt(districtCodes[row]);
+                out.writeInt(districtNames[row]);
+                out.writeInt(villages[row]);
+                out.writeInt(councils[row]);
+                out.writeInt(cooperatives[row]);
+                out.writeInt(firstNameTerms[row]);
+                out.writeInt(lastNameTerms[row]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Restore dictionaries and rows written by writeSnapshot into this (empty) index.
+     * Dictionaries are re-encoded in their original order, so the stored codes stay valid.
+     *
+     * @param in Snapshot payload (checksum already verified)
+     */
+    void readSnapshot(ByteBuffer in) {
+        lock.writeLock().lock();
+        try {
+            loadedAt = in.getLong();
+
+            for (Dictionary dictionary : snapshotDictionaries()) {
+                int count = in.getInt();
+                for (int i = 0; i < count; i++) {
+                    String value = readString(in);
+                    if (dictionary == nameTermDict) {
+                        encodeNameTerm(value);
+                    } else {
+                        dictionary.encode(value);
+                    }
+                }
+            }
+
+            int rows = in.getInt();
+            ensureCapacity(rows);
+            for (int row = 0; row < rows; row++) {
+                ids[row] = readString(in);
+                nationalIds[row] = readString(in);
+                phonesNormalized[row] = readString(in);
+                phonesDisplay[row] = readString(in);
+                firstNames[row] = readString(in);
+                lastNames[row] = readString(in);
+                genders[row] = readString(in);
+                datesOfBirth[row] = readString(in);
+                searchNames[row] = readString(in);
+                soundexCodes[row] = readString(in);
+                sourceRecordIds[row] = readString(in);
+
+                districtCodes[row] = in.getInt();
+                districtNames[row] = in.getInt();
+                villages[row] = in.getInt();
+                councils[row] = in.getInt();
+                cooperatives[row] = in.getInt();
+                firstNameTerms[row] = in.getInt();
+                lastNameTerms[row] = in.getInt();
+
+                rowById.put(ids[row], row);
+                liveRows.add(row);
+                indexRow(row);
+            }
+            size = rows;
+            liveCount = rows;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Dictionaries in snapshot order
+     */
+    private Dictionary[] snapshotDictionaries() {
+        return new Dictionary[] {
+            districtCodeDict, districtNameDict, villageDict, councilDict, cooperativeDict, nameTermDict
+        };
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // =========================================================================
+    // QUERIES
+    // =========================================================================
+
+    /**
+     * Evaluate criteria against the index.
+     * Mirrors the predicates of FarmerSearchService.searchByCriteria's SQL.
+     * Exact filters are intersections of row bitmaps, so every match is
+     * counted, and every match is scored into a bounded top-K so the best
+     * rows are kept however many there are. Scoring stops early once the
+     * kept rows all have maxScore.
+     *
+     * @param criteria Search criteria
+     * @param limit Number of best rows to return
+     * @param scorer Relevance of a materialized row
+     * @param maxScore Highest score the scorer returns
+     * @return The best matching farmers, scored and best first, and the exact match count
+     */
+    Matches search(SearchCriteria criteria, int limit, ToIntFunction<FarmerResult> scorer, int maxScore) {
+        lock.readLock().lock();
+        try {
+            // Exact filters: intersect the live rows with the rows of each matching value
+            RowSet candidates = liveRows;
+            if (isNotEmpty(criteria.getDistrictCode()) || isNotEmpty(criteria.getDistrictName())) {
+                BitSet districtCodeMatches = new BitSet();
+                BitSet districtNameMatches = new BitSet();
+                for (String value : new String[] { criteria.getDistrictCode(), criteria.getDistrictName() }) {
+                    if (isNotEmpty(value)) {
+                        districtCodeMatches.or(districtCodeDict.matchIgnoreCase(value.trim()));
+                        districtNameMatches.or(districtNameDict.matchIgnoreCase(value.trim()));
+                    }
+                }
+                candidates = RowSet.and(candidates, RowSet.union(Arrays.asList(
+                    districtCodeRows.rows(districtCodeMatches), districtNameRows.rows(districtNameMatches))));
+            }
+            if (isNotEmpty(criteria.getVillage())) {
+                candidates = RowSet.and(candidates,
+                    villageRows.rows(villageDict.matchIgnoreCase(criteria.getVillage().trim())));
+            }
+            if (isNotEmpty(criteria.getCommunityCouncil())) {
+                candidates = RowSet.and(candidates,
+                    councilRows.rows(councilDict.lookup(criteria.getCommunityCouncil().trim())));
+            }
+            if (isNotEmpty(criteria.getCooperative())) {
+                candidates = RowSet.and(candidates,
+                    cooperativeRows.rows(cooperativeDict.lookup(criteria.getCooperative().trim())));
+            }
+
+            // Partial ID / phone: digit grams narrow the candidates, each row is verified below
+            SubstringIndex.Fragment partialId = SubstringIndex.Fragment.parse(criteria.getPartialId(), false);
+            SubstringIndex.Fragment partialPhone = SubstringIndex.Fragment.parse(criteria.getPartialPhone(), true);
+            if (partialId != null) {
+                RowSet idRows = nationalIdGrams.candidates(partialId);
+                if (idRows != null) {
+                    candidates = RowSet.and(candidates, idRows);
+                }
+            }
+            if (partialPhone != null) {
+                RowSet phoneRows = phoneGrams.candidates(partialPhone);
+                if (phoneRows != null) {
+                    candidates = RowSet.and(candidates, phoneRows);
+                }
+            }
+
+            // Rows with a name within edit distance or sounding alike come first,
+            // then rows whose name is trigram-similar or contains the query
+            RowSet nearRows = candidates;
+            RowSet looseRows = null;
+            String searchName = null;
+            BitSet similarNameTerms = null;
+            if (isNotEmpty(criteria.getName())) {
+                searchName = fuzzyService.normalizeName(criteria.getName());
+                similarNameTerms = nameTrigrams.search(searchName, NAME_SIMILARITY_THRESHOLD);
+                nearRows = RowSet.and(candidates, nameTermRows.rows(findNearNameTerms(searchName)));
+
+                BitSet looseNameTerms = findTermsContaining(longestToken(searchName));
+                looseNameTerms.or(similarNameTerms);
+                looseRows = RowSet.andNot(RowSet.and(candidates, nameTermRows.rows(looseNameTerms)), nearRows);
+            }
+
+            // Near rows are offered first, so they win ties against loose rows
+            Matches matches = new Matches(limit, scorer, maxScore);
+            boolean needsRowChecks = partialId != null || partialPhone != null;
+            if (needsRowChecks) {
+                RowSet.Cursor cursor = nearRows.cursor();
+                for (int row = cursor.next(); row >= 0; row = cursor.next()) {
+                    if (matchesPartials(row, partialId, partialPhone)) {
+                        matches.add(row);
+                    }
+                }
+            } else {
+                // Bitmap-only predicates: the count is the cardinality
+                RowSet.Cursor cursor = nearRows.cursor();
+                for (int row = cursor.next(); row >= 0 && matches.canAccept(); row = cursor.next()) {
+                    matches.offer(row);
+                }
+                matches.totalCount = nearRows.cardinality();
+            }
+
+            if (looseRows != null) {
+                RowSet.Cursor cursor = looseRows.cursor();
+                for (int row = cursor.next(); row >= 0; row = cursor.next()) {
+                    if (matchesName(row, searchName, similarNameTerms) &&
+                        matchesPartials(row, partialId, partialPhone)) {
+                        matches.add(row);
+                    }
+                }
+            }
+
+            matches.farmers = matches.top.toSortedList();
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get a single farmer by index ID
+     */
+    FarmerResult get(String id) {
+        lock.readLock().lock();
+        try {
+            Integer row = rowById.get(id);
+            return row != null ? toFarmerResult(row) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Name terms within edit distance of, or phonetically equal to, any query token
+     */
+    private BitSet findNearNameTerms(String searchName) {
+        BitSet near = new BitSet();
+        for (String token : searchName.split(" ")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            int maxDistance = token.length() <= SHORT_NAME_LENGTH ? 1 : MAX_NAME_EDIT_DISTANCE;
+            near.or(nameTree.search(token, maxDistance));
+            for (PhoneticTable table : phoneticTables) {
+                table.match(token, near);
+            }
+        }
+        return near;
+    }
+
+    /**
+     * Name terms containing a token. Every row whose full name contains the
+     * query has each query token inside its first or last name term.
+     */
+    private BitSet findTermsContaining(String token) {
+        BitSet terms = new BitSet();
+        for (int term = 0; term < nameTermDict.size(); term++) {
+            if (nameTermDict.decode(term).contains(token)) {
+                terms.set(term);
+            }
+        }
+        return terms;
+    }
+
+    private static String longestToken(String searchName) {
+        String longest = "";
+        for (String token : searchName.split(" ")) {
+            if (token.length() > longest.length()) {
+                longest = token;
+            }
+        }
+        return longest;
+    }
+
+    private boolean matchesPartials(int row, SubstringIndex.Fragment partialId, SubstringIndex.Fragment partialPhone) {
+        return (partialId == null || partialId.matches(nationalIds[row])) &&
+               (partialPhone == null || partialPhone.matches(phonesNormalized[row]));
+    }
+
+    /**
+     * Loose name predicate: substring of the full name or trigram similarity
+     * on either name. Similar names are resolved once per query to term ids by
+     * the trigram index; phonetic matches are handled by findNearNameTerms.
+     */
+    private boolean matchesName(int row, String searchName, BitSet similarNameTerms) {
+        if (contains(similarNameTerms, firstNameTerms[row]) || contains(similarNameTerms, lastNameTerms[row])) {
+            return true;
+        }
+        return searchNames[row] != null && searchNames[row].contains(searchName);
+    }
+
+    /**
+     * Materialize a row as a FarmerResult
+     */
+    private FarmerResult toFarmerResult(int row) {
+        FarmerResult farmer = new FarmerResult();
+
+        farmer.setId(ids[row]);
+        farmer.setNationalId(nationalIds[row]);
+        farmer.setNationalIdMasked(FarmerSearchService.maskNationalId(nationalIds[row]));
+        farmer.setFirstName(firstNames[row]);
+        farmer.setLastName(lastNames[row]);
+        farmer.setGender(genders[row]);
+        farmer.setDateOfBirth(datesOfBirth[row]);
+        farmer.setPhone(phonesDisplay[row]);
+        farmer.setPhoneMasked(FarmerSearchService.maskPhone(phonesDisplay[row]));
+        farmer.setDistrictCode(districtCodeDict.decode(districtCodes[row]));
+        farmer.setDistrictName(districtNameDict.decode(districtNames[row]));
+        farmer.setVillage(villageDict.decode(villages[row]));
+        farmer.setCommunityCouncil(councilDict.decode(councils[row]));
+        farmer.setCooperativeName(cooperativeDict.decode(cooperatives[row]));
+        farmer.setSourceRecordId(sourceRecordIds[row]);
+        farmer.setSoundex(soundexCodes[row]);
+
+        int firstTerm = firstNameTerms[row];
+        int lastTerm = lastNameTerms[row];
+        farmer.setNormalizedFirstName(nameTermDict.decode(firstTerm));
+        farmer.setNormalizedLastName(nameTermDict.decode(lastTerm));
+        farmer.setFirstNameSoundexKey(firstTerm >= 0 ? termSoundexKeys[firstTerm] : fuzzyService.soundexKey(null));
+        farmer.setLastNameSoundexKey(lastTerm >= 0 ? termSoundexKeys[lastTerm] : fuzzyService.soundexKey(null));
+
+        return farmer;
+    }
+
+    // =========================================================================
+    // STATUS
+    // =========================================================================
+
+    /**
+     * Number of live (non-deleted) farmers in the index
+     */
+    public int getFarmerCount() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of distinct first/last name terms
+     */
+    public int getNameTermCount() {
+        lock.readLock().lock();
+        try {
+            return nameTermDict.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Time of the last full load (epoch ms)
+     */
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    // =========================================================================
+    // HELPERS
+    // =========================================================================
+
+    private static boolean contains(BitSet codes, int code) {
+        return code >= 0 && codes.get(code);
+    }
+
+    private static boolean isNotEmpty(String s) {
+        return s != null && !s.trim().isEmpty();
+    }
+
+    // =========================================================================
+    // PHONETIC CODE TABLES
+    // =========================================================================
+
+    /**
+     * Phonetic codes of every name term for one encoder.
+     * Codes are dictionary-encoded to ints once at index time; each code id
+     * holds the ids of the terms that produce it, so looking up a query
+     * token's phonetic candidates is a hash probe per code.
+     */
+    static final class PhoneticTable {
+        private final PhoneticEncoder encoder;
+        private final Dictionary codes = new Dictionary();
+        private int[][] termsByCode = new int[64][];
+        private int[] termCounts = new int[64];
+
+        PhoneticTable(PhoneticEncoder encoder) {
+            this.encoder = encoder;
+        }
+
+        void add(int termId, String term) {
+            for (String code : encoder.encode(term)) {
+                int codeId = codes.encode(code);
+                if (codeId >= termsByCode.length) {
+                    termsByCode = Arrays.copyOf(termsByCode, termsByCode.length * 2);
+                    termCounts = Arrays.copyOf(termCounts, termCounts.length * 2);
+                }
+
+                int[] terms = termsByCode[codeId];
+                int count = termCounts[codeId];
+                if (terms == null) {
+                    terms = new int[2];
+                } else if (count > 0 && terms[count - 1] == termId) {
+                    continue; // Primary and alternate code are the same
+                } else if (count == terms.length) {
+                    terms = Arrays.copyOf(terms, count * 2);
+                }
+                terms[count] = termId;
+                termsByCode[codeId] = terms;
+                termCounts[codeId] = count + 1;
+            }
+        }
+
+        void match(String token, BitSet matches) {
+            for (String code : encoder.encode(token)) {
+                int codeId = codes.lookup(code);
+                if (codeId < 0) {
+                    continue;
+                }
+                int[] terms = termsByCode[codeId];
+                for (int i = 0; i < termCounts[codeId]; i++) {
+                    matches.set(terms[i]);
+                }
+            }
+        }
+    }
+
+    // =========================================================================
+    // SEARCH RESULTS AND POSTINGS
+    // =========================================================================
+
+    /**
+     * Rows matching a search: the best limit of them materialized, all of them counted
+     */
+    final class Matches {
+        private final TopKSelector<FarmerResult> top;
+        private final ToIntFunction<FarmerResult> scorer;
+        private final int maxScore;
+        private List<FarmerResult> farmers;
+        private int totalCount = 0;
+
+        private Matches(int limit, ToIntFunction<FarmerResult> scorer, int maxScore) {
+            this.top = new TopKSelector<>(limit);
+            this.scorer = scorer;
+            this.maxScore = maxScore;
+        }
+
+        private void add(int row) {
+            if (canAccept()) {
+                offer(row);
+            }
+            totalCount++;
+        }
+
+        private boolean canAccept() {
+            return top.canAccept(maxScore);
+        }
+
+        private void offer(int row) {
+            FarmerResult farmer = toFarmerResult(row);
+            int score = scorer.applyAsInt(farmer);
+            farmer.setRelevanceScore(score);
+            top.offer(score, farmer);
+        }
+
+        List<FarmerResult> getFarmers() {
+            return farmers;
+        }
+
+        int getTotalCount() {
+            return totalCount;
+        }
+    }
+
+    /**
+     * Row bitmap per dictionary code of one column
+     */
+    static final class Postings {
+        private final List<RowSet> rowsByCode = new ArrayList<>();
+
+        void add(int code, int row) {
+            if (code < 0) {
+                return;
+            }
+            while (rowsByCode.size() <= code) {
+                rowsByCode.add(null);
+            }
+            RowSet rows = rowsByCode.get(code);
+            if (rows == null) {
+                rows = new RowSet();
+                rowsByCode.set(code, rows);
+            }
+            rows.add(row);
+        }
+
+        void remove(int code, int row) {
+            if (code >= 0 && code < rowsByCode.size() && rowsByCode.get(code) != null) {
+                rowsByCode.get(code).remove(row);
+            }
+        }
+
+        /**
+         * Rows with the given code (empty for NULL_CODE / MISSING)
+         */
+        RowSet rows(int code) {
+            if (code < 0 || code >= rowsByCode.size() || rowsByCode.get(code) == null) {
+                return new RowSet();
+            }
+            return rowsByCode.get(code);
+        }
+
+        /**
+         * Rows with any of the given codes
+         */
+        RowSet rows(BitSet codes) {
+            List<RowSet> sets = new ArrayList<>();
+            for (int code = codes.nextSetBit(0); code >= 0; code = codes.nextSetBit(code + 1)) {
+                if (code < rowsByCode.size() && rowsByCode.get(code) != null) {
+                    sets.add(rowsByCode.get(code));
+                }
+            }
+            return RowSet.union(sets);
+        }
+    }
+
+    // =========================================================================
+    // DICTIONARY ENCODING
+    // =========================================================================
+
+    /**
+     * Append-only string dictionary mapping distinct values to dense int codes.
+     * Null values encode to NULL_CODE.
+     */
+    static final class Dictionary {
+        static final int NULL_CODE = -1;
+        static final int MISSING = -2;  // Lookup of a value that was never encoded
+        static final int ANY = -3;      // No filter on this column
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int encode(String value) {
+            if (value == null) {
+                return NULL_CODE;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                values.add(value);
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        String decode(int code) {
+            return code >= 0 ? values.get(code) : null;
+        }
+
+        int lookup(String value) {
+            Integer code = codes.get(value);
+            return code != null ? code : MISSING;
+        }
+
+        /**
+         * Codes of all values equal to the given value ignoring case
+         */
+        BitSet matchIgnoreCase(String value) {
+            BitSet matches = new BitSet(values.size());
+            for (int i = 0; i < values.size(); i++) {
+                if (values.get(i).equalsIgnoreCase(value)) {
+                    matches.set(i);
+                }
+            }
+            return matches;
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+}
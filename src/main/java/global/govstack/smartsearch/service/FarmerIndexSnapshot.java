@@ -0,0 +1,171 @@
+package global.govstack.smartsearch.service;
+
+import org.joget.commons.util.LogUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Farmer Index Snapshot
+ *
+ * Binary snapshot of a FarmerIndex so the memory index is usable right after
+ * a restart or bundle redeploy instead of after a full scan of the view.
+ *
+ * File layout (big-endian):
+ *
+ *   int   magic           "FSIX"
+ *   int   format version  FORMAT_VERSION
+ *   int   projection hash hash of FarmerIndex.COLUMNS
+ *   long  written at      epoch ms
+ *   long  payload length  bytes after the header
+ *   long  payload CRC32
+ *   ...   payload         FarmerIndex.writeSnapshot
+ *
+ * Files are written to a temporary file and renamed into place, and read
+ * through a read-only FileChannel mapping. A snapshot with a different
+ * version or projection, a wrong length or a bad checksum is ignored.
+ */
+class FarmerIndexSnapshot {
+
+    private static final String CLASS_NAME = FarmerIndexSnapshot.class.getName();
+
+    private static final int MAGIC = 0x46534958; // "FSIX"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 8 + 8;
+
+    private final File file;
+
+    FarmerIndexSnapshot(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Write the index to the snapshot file, replacing any previous snapshot
+     *
+     * @param index Index to write
+     */
+    void write(FarmerIndex index) throws IOException {
+        long startTime = System.currentTimeMillis();
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create snapshot directory " + directory);
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            // Payload after the header, checksummed as it is written
+            channel.position(HEADER_SIZE);
+            CRC32 crc = new CRC32();
+            OutputStream channelOut = Channels.newOutputStream(channel);
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new CheckedOutputStream(channelOut, crc), 64 * 1024));
+            index.writeSnapshot(out);
+            out.flush();
+            long payloadLength = channel.position() - HEADER_SIZE;
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(FORMAT_VERSION);
+            header.putInt(FarmerIndex.COLUMNS.hashCode());
+            header.putLong(System.currentTimeMillis());
+            header.putLong(payloadLength);
+            header.putLong(crc.getValue());
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+
+        Files.move(temp.toPath(), file.toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        LogUtil.info(CLASS_NAME, "Wrote memory index snapshot (" + index.getFarmerCount() + " farmers, " +
+            file.length() + " bytes) in " + (System.currentTimeMillis() - startTime) + "ms");
+    }
+
+    /**
+     * Restore an index from the snapshot file
+     *
+     * @param fuzzyService Fuzzy match service for the restored index
+     * @return Restored index, or null if there is no usable snapshot
+     */
+    FarmerIndex read(FuzzyMatchService fuzzyService) {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        long startTime = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                LogUtil.warn(CLASS_NAME, "Ignoring truncated memory index snapshot " + file);
+                return null;
+            }
+
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            int magic = mapped.getInt();
+            int version = mapped.getInt();
+            int projection = mapped.getInt();
+            long writtenAt = mapped.getLong();
+            long payloadLength = mapped.getLong();
+            long checksum = mapped.getLong();
+
+            if (magic != MAGIC || version != FORMAT_VERSION || projection != FarmerIndex.COLUMNS.hashCode()) {
+                LogUtil.info(CLASS_NAME, "Ignoring memory index snapshot from another format version");
+                return null;
+            }
+            if (payloadLength != fileSize - HEADER_SIZE) {
+                LogUtil.warn(CLASS_NAME, "Ignoring memory index snapshot with wrong length " + file);
+                return null;
+            }
+
+            ByteBuffer payload = mapped.slice();
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if (crc.getValue() != checksum) {
+                LogUtil.warn(CLASS_NAME, "Ignoring memory index snapshot with bad checksum " + file);
+                return null;
+            }
+
+            FarmerIndex index = new FarmerIndex(fuzzyService);
+            index.readSnapshot(payload);
+
+            LogUtil.info(CLASS_NAME, "Restored " + index.getFarmerCount() + " farmers from memory index snapshot " +
+                "written " + ((System.currentTimeMillis() - writtenAt) / 1000) + "s ago in " +
+                (System.currentTimeMillis() - startTime) + "ms");
+            return index;
+
+        } catch (Exception e) {
+            LogUtil.error(CLASS_NAME, e, "Failed to read memory index snapshot " + file);
+            return null;
+        }
+    }
+
+    /**
+     * Delete the snapshot (memory index disabled)
+     */
+    void delete() {
+        if (file.isFile() && !file.delete()) {
+            LogUtil.warn(CLASS_NAME, "Could not delete memory index snapshot " + file);
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+}
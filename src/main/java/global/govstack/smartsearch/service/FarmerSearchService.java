@@ -2,13 +2,28 @@ package global.govstack.smartsearch.service;
 
 import org.joget.apps.app.service.AppUtil;
 import org.joget.commons.util.LogUtil;
+import org.joget.commons.util.SetupManager;
 
 import javax.sql.DataSource;
+import java.io.File;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Farmer Search Service
@@ -20,8 +35,20 @@ import java.util.*;
  * 1. Check for exact match fields (nationalId, phone) → instant result
  * 2. Build parameterized SQL query with filters
  * 3. Execute query, get raw results (up to MAX_DB_RESULTS)
- * 4. Score and rank in application layer
+ * 4. Score in application layer, keeping the best in a bounded top-K heap
  * 5. Return top MAX_RETURN_RESULTS sorted by relevance
+ * 
+ * Optional memory index mode: when enabled, the search view is loaded once
+ * into a resident FarmerIndex and criteria searches are answered from memory.
+ * SQL remains the fallback while the index is loading or disabled.
+ * The index is snapshotted to the Joget data directory after each load and on
+ * shutdown, and restored from there on bundle start (see warmUp).
+ * 
+ * Successful results are kept in a SearchResultCache for repeated criteria;
+ * refreshFarmer() drops the entries the changed farmer could appear in.
+ * 
+ * searchBatch() runs many criteria on a small shared worker pool; each worker
+ * holds one connection and its prepared statements for all the items it runs.
  */
 public class FarmerSearchService {
 
@@ -34,18 +61,86 @@ public class FarmerSearchService {
     // Autocomplete result limits (Issue #19)
     private static final int MAX_AUTOCOMPLETE_RESULTS = 50;      // Villages, cooperatives
     private static final int MAX_CC_AUTOCOMPLETE_RESULTS = 100;  // Community councils (larger list)
+    
+    // Autocomplete dictionaries: background rebuild interval and retry delay after a failed load
+    private static final long AUTOCOMPLETE_REFRESH_INTERVAL_MINUTES = 10;
+    private static final long AUTOCOMPLETE_RETRY_DELAY_MS = 60 * 1000L;
 
     // Scoring constants (Issues #22, #23)
     private static final int EXACT_MATCH_SCORE = 100;  // Exact national ID or phone match
     private static final int BASE_FUZZY_SCORE = 50;    // Base score for fuzzy/criteria matches
     
-    // View name (replaces separate index table for zero-latency search)
-    private static final String INDEX_TABLE = "v_farmer_search";
+    // Result columns in mapResultSetToFarmer order, and the subset read to score SQL candidates
+    private static final String FARMER_COLUMNS = "id, c_national_id, c_first_name, c_last_name, c_gender, " +
+        "c_date_of_birth, c_phone_display, c_district_code, c_district_name, c_village, c_community_council, " +
+        "c_cooperative_name, c_source_record_id, c_name_soundex";
+    private static final String SCORING_COLUMNS = "id, c_first_name, c_last_name, c_district_code, c_village";
+    
+    // Memory index: full reload interval to correct any missed incremental updates
+    private static final long INDEX_RELOAD_INTERVAL_MINUTES = 60;
+    
+    // Bulk change notifications above this size trigger a full reload instead of per-farmer refreshes
+    private static final int MAX_FARMER_REFRESHES = 1000;
+    
+    // Memory index snapshot, relative to the Joget data directory
+    private static final String INDEX_SNAPSHOT_PATH = "smart-search" + File.separator + "farmer-index.snapshot";
+    
+    // Result cache: repeated criteria from enumerators working the same village
+    private static final int RESULT_CACHE_MAX_ENTRIES = 1000;
+    // Off unless configured: without a change feed nothing drops results that a registration makes stale
+    private static final int DEFAULT_RESULT_CACHE_TTL_SECONDS = 0;
+    
+    // Multi-get lookups: farmers cached by ID (same TTL as results), IDs per request and per IN list
+    private static final int FARMER_ID_CACHE_MAX_ENTRIES = 5000;
+    public static final int MAX_LOOKUP_IDS = 500;
+    private static final int LOOKUP_IN_LIST_SIZE = 100;
+    
+    // Batch search: worker pool size (shared by all batches), items per batch and overall wait
+    private static final int BATCH_THREADS = 4;
+    public static final int MAX_BATCH_SIZE = 200;
+    private static final long BATCH_TIMEOUT_SECONDS = 60;
+    
+    // Name search: the first branch runs on the caller's connection, the others in parallel on
+    // extra connections while any of NAME_BRANCH_CONNECTIONS are free; a branch still running
+    // NAME_BRANCH_DEADLINE_MS after it started is cut off
+    private static final int NAME_BRANCH_CONNECTIONS = 8;
+    private static final long NAME_BRANCH_DEADLINE_MS = 1500;
+    private static final int NAME_BRANCH_QUERY_TIMEOUT_SECONDS = 2;  // Stops cut-off queries on the server
     
     // Singleton
     private static FarmerSearchService instance;
     private final FuzzyMatchService fuzzyService;
     
+    // Memory index state (null until loaded)
+    private volatile FarmerIndex farmerIndex;
+    private volatile boolean memoryIndexEnabled = false;
+    private volatile boolean memoryIndexReloading = false;
+    private final Set<String> refreshedDuringReload = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService indexExecutor;
+    
+    // Search result cache (TTL 0 disables)
+    private final SearchResultCache resultCache =
+        new SearchResultCache(RESULT_CACHE_MAX_ENTRIES, DEFAULT_RESULT_CACHE_TTL_SECONDS * 1000L);
+    private volatile boolean resultCacheEnabled = false;
+    private final FarmerIdCache farmerIdCache =
+        new FarmerIdCache(FARMER_ID_CACHE_MAX_ENTRIES, DEFAULT_RESULT_CACHE_TTL_SECONDS * 1000L);
+    
+    // Criteria search SQL, compiled once per criteria shape
+    private final QueryTemplates queryTemplates = new QueryTemplates(SCORING_COLUMNS, " LIMIT ?");
+    
+    // Autocomplete dictionaries (null until first use or after a failed load)
+    private volatile AutocompleteIndex autocompleteIndex;
+    private volatile long autocompleteLoadFailedAt = 0;
+    private final Object autocompleteLock = new Object();
+    private ScheduledExecutorService autocompleteExecutor;
+    
+    // Batch search workers (created on first batch)
+    private ExecutorService batchExecutor;
+    
+    // Name branch query workers (created on first name search)
+    private ExecutorService nameExecutor;
+    private Semaphore branchConnections = new Semaphore(NAME_BRANCH_CONNECTIONS);
+    
     private FarmerSearchService() {
         this.fuzzyService = FuzzyMatchService.getInstance();
     }
@@ -162,6 +257,12 @@ public class FarmerSearchService {
         private String soundex;
         private int relevanceScore;
         
+        // Scoring columns: lowercased/trimmed names and packed Soundex keys (not serialized)
+        private String normalizedFirstName;
+        private String normalizedLastName;
+        private int firstNameSoundexKey;
+        private int lastNameSoundexKey;
+        
         // Getters and setters
         public String getId() { return id; }
         public void setId(String id) { this.id = id; }
@@ -213,6 +314,18 @@ public class FarmerSearchService {
         
         public int getRelevanceScore() { return relevanceScore; }
         public void setRelevanceScore(int relevanceScore) { this.relevanceScore = relevanceScore; }
+        
+        public String getNormalizedFirstName() { return normalizedFirstName; }
+        public void setNormalizedFirstName(String normalizedFirstName) { this.normalizedFirstName = normalizedFirstName; }
+        
+        public String getNormalizedLastName() { return normalizedLastName; }
+        public void setNormalizedLastName(String normalizedLastName) { this.normalizedLastName = normalizedLastName; }
+        
+        public int getFirstNameSoundexKey() { return firstNameSoundexKey; }
+        public void setFirstNameSoundexKey(int firstNameSoundexKey) { this.firstNameSoundexKey = firstNameSoundexKey; }
+        
+        public int getLastNameSoundexKey() { return lastNameSoundexKey; }
+        public void setLastNameSoundexKey(int lastNameSoundexKey) { this.lastNameSoundexKey = lastNameSoundexKey; }
     }
     
     /**
@@ -220,6 +333,7 @@ public class FarmerSearchService {
      */
     public static class SearchResult {
         private boolean success = true;
+        private boolean complete = true;
         private SearchResultType resultType = SearchResultType.NO_RESULTS;
         private int totalCount = 0;
         private List<FarmerResult> farmers = new ArrayList<>();
@@ -229,6 +343,13 @@ public class FarmerSearchService {
         public boolean isSuccess() { return success; }
         public void setSuccess(boolean success) { this.success = success; }
         
+        /**
+         * False when a name branch was cut off or failed, so matches may be
+         * missing; such results are not cached or shared
+         */
+        public boolean isComplete() { return complete; }
+        public void setComplete(boolean complete) { this.complete = complete; }
+        
         public SearchResultType getResultType() { return resultType; }
         public void setResultType(SearchResultType resultType) { this.resultType = resultType; }
         
@@ -253,6 +374,15 @@ public class FarmerSearchService {
      * Main search dispatcher
      */
     public SearchResult search(SearchCriteria criteria) {
+        try (SharedConnection conn = new SharedConnection()) {
+            return search(criteria, conn);
+        }
+    }
+    
+    /**
+     * Search using a connection that may be shared with other searches
+     */
+    private SearchResult search(SearchCriteria criteria, SharedConnection conn) {
         long startTime = System.currentTimeMillis();
         SearchResult result = new SearchResult();
         
@@ -264,25 +394,38 @@ public class FarmerSearchService {
                 return result;
             }
             
+            SearchResult cached = resultCacheEnabled ? resultCache.get(criteria) : null;
+            if (cached != null) {
+                return copyResult(cached, System.currentTimeMillis() - startTime);
+            }
+            long cacheGeneration = resultCache.getGeneration();
+            
             // Check for exact match fields first
             if (isNotEmpty(criteria.getNationalId())) {
-                result = searchByNationalId(criteria.getNationalId());
+                result = searchByNationalId(criteria.getNationalId(), conn);
                 if (!result.getFarmers().isEmpty()) {
                     result.setResultType(SearchResultType.EXACT_ID_MATCH);
                 }
             } else if (isNotEmpty(criteria.getPhone())) {
-                result = searchByPhone(criteria.getPhone());
+                result = searchByPhone(criteria.getPhone(), conn);
                 if (!result.getFarmers().isEmpty()) {
                     result.setResultType(SearchResultType.EXACT_PHONE_MATCH);
                 }
             } else {
                 // Criteria-based search
-                result = searchByCriteria(criteria);
+                result = searchByCriteria(criteria, conn);
                 if (!result.getFarmers().isEmpty()) {
                     result.setResultType(SearchResultType.CRITERIA_MATCH);
                 }
             }
             
+            // Only criteria matches are cached: a cached miss or exact ID/phone lookup would hide a
+            // farmer registered since, which is what duplicate-registration checks look for
+            if (resultCacheEnabled && result.isSuccess() && result.isComplete() &&
+                    result.getResultType() == SearchResultType.CRITERIA_MATCH) {
+                resultCache.put(criteria, copyResult(result, 0), cacheGeneration);
+            }
+            
         } catch (Exception e) {
             LogUtil.error(CLASS_NAME, e, "Search failed");
             result.setSuccess(false);
@@ -297,6 +440,12 @@ public class FarmerSearchService {
      * Exact match by National ID
      */
     public SearchResult searchByNationalId(String nationalId) {
+        try (SharedConnection conn = new SharedConnection()) {
+            return searchByNationalId(nationalId, conn);
+        }
+    }
+    
+    private SearchResult searchByNationalId(String nationalId, SharedConnection conn) {
         SearchResult result = new SearchResult();
         
         if (!isNotEmpty(nationalId)) {
@@ -305,21 +454,17 @@ public class FarmerSearchService {
             return result;
         }
         
-        String sql = "SELECT * FROM " + INDEX_TABLE + " WHERE c_national_id = ?";
+        String sql = "SELECT " + FARMER_COLUMNS + " FROM " + searchTable() + " WHERE c_national_id = ?";
         
         try {
-            DataSource ds = getDataSource();
-            try (Connection conn = ds.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-                
-                ps.setString(1, nationalId.trim());
-                
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        FarmerResult farmer = mapResultSetToFarmer(rs);
-                        farmer.setRelevanceScore(EXACT_MATCH_SCORE); // Exact match = 100%
-                        result.getFarmers().add(farmer);
-                    }
+            PreparedStatement ps = conn.prepare(sql);
+            ps.setString(1, nationalId.trim());
+            
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    FarmerResult farmer = mapResultSetToFarmer(rs);
+                    farmer.setRelevanceScore(EXACT_MATCH_SCORE); // Exact match = 100%
+                    result.getFarmers().add(farmer);
                 }
             }
             
@@ -340,6 +485,12 @@ public class FarmerSearchService {
      * Exact match by Phone number
      */
     public SearchResult searchByPhone(String phone) {
+        try (SharedConnection conn = new SharedConnection()) {
+            return searchByPhone(phone, conn);
+        }
+    }
+    
+    private SearchResult searchByPhone(String phone, SharedConnection conn) {
         SearchResult result = new SearchResult();
         
         if (!isNotEmpty(phone)) {
@@ -351,21 +502,17 @@ public class FarmerSearchService {
         // Normalize phone to digits only
         String normalizedPhone = fuzzyService.normalizePhone(phone);
         
-        String sql = "SELECT * FROM " + INDEX_TABLE + " WHERE c_phone_normalized = ?";
+        String sql = "SELECT " + FARMER_COLUMNS + " FROM " + searchTable() + " WHERE c_phone_normalized = ?";
         
         try {
-            DataSource ds = getDataSource();
-            try (Connection conn = ds.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-                
-                ps.setString(1, normalizedPhone);
-                
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        FarmerResult farmer = mapResultSetToFarmer(rs);
-                        farmer.setRelevanceScore(EXACT_MATCH_SCORE); // Exact match = 100%
-                        result.getFarmers().add(farmer);
-                    }
+            PreparedStatement ps = conn.prepare(sql);
+            ps.setString(1, normalizedPhone);
+            
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    FarmerResult farmer = mapResultSetToFarmer(rs);
+                    farmer.setRelevanceScore(EXACT_MATCH_SCORE); // Exact match = 100%
+                    result.getFarmers().add(farmer);
                 }
             }
             
@@ -386,135 +533,473 @@ public class FarmerSearchService {
      * Search by multiple criteria with fuzzy matching
      */
     public SearchResult searchByCriteria(SearchCriteria criteria) {
+        try (SharedConnection conn = new SharedConnection()) {
+            return searchByCriteria(criteria, conn);
+        }
+    }
+    
+    private SearchResult searchByCriteria(SearchCriteria criteria, SharedConnection conn) {
         SearchResult result = new SearchResult();
         
         try {
-            // Build dynamic query
-            StringBuilder sql = new StringBuilder();
-            sql.append("SELECT * FROM ").append(INDEX_TABLE).append(" WHERE 1=1");
-            
-            List<Object> params = new ArrayList<>();
+            // The memory index scores every match itself and counts them all;
+            // from the database, candidates are scored here and the count is capped at MAX_DB_RESULTS
+            int limit = Math.min(criteria.getLimit(), MAX_RETURN_RESULTS);
+            List<FarmerResult> scoredResults;
+            int totalCount;
+            FarmerIndex index = farmerIndex;
+            if (index != null) {
+                NameQuery nameQuery = fuzzyService.compileNameQuery(criteria.getName());
+                FarmerIndex.Matches matches = index.search(criteria, limit,
+                    farmer -> calculateRelevanceScore(farmer, criteria, nameQuery), EXACT_MATCH_SCORE);
+                scoredResults = matches.getFarmers();
+                totalCount = matches.getTotalCount();
+            } else {
+                List<FarmerResult> rawResults = queryCandidates(criteria, conn, result);
+                // Name branches return up to MAX_DB_RESULTS each; report the merged count capped as before
+                totalCount = Math.min(rawResults.size(), MAX_DB_RESULTS);
+                scoredResults = hydrate(scoreAndSelectTop(rawResults, criteria, limit), conn);
+            }
             
-            // District filter - match code OR name, case-insensitive
-            // Supports both district code (e.g., "LEI") and district name (e.g., "Leribe", "leribe")
-            if (isNotEmpty(criteria.getDistrictCode()) || isNotEmpty(criteria.getDistrictName())) {
-                sql.append(" AND (");
-                List<String> districtConditions = new ArrayList<>();
-
-                if (isNotEmpty(criteria.getDistrictCode())) {
-                    districtConditions.add("LOWER(c_district_code) = LOWER(?)");
-                    params.add(criteria.getDistrictCode().trim());
-                    districtConditions.add("LOWER(c_district_name) = LOWER(?)");
-                    params.add(criteria.getDistrictCode().trim());
-                }
-                if (isNotEmpty(criteria.getDistrictName())) {
-                    districtConditions.add("LOWER(c_district_code) = LOWER(?)");
-                    params.add(criteria.getDistrictName().trim());
-                    districtConditions.add("LOWER(c_district_name) = LOWER(?)");
-                    params.add(criteria.getDistrictName().trim());
+            result.setFarmers(scoredResults);
+            result.setTotalCount(totalCount);
+            result.setResultType(scoredResults.isEmpty() ? 
+                SearchResultType.NO_RESULTS : SearchResultType.CRITERIA_MATCH);
+                
+        } catch (Exception e) {
+            LogUtil.error(CLASS_NAME, e, "Search by criteria failed");
+            result.setSuccess(false);
+            result.setErrorMessage("Database error: " + e.getMessage());
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Query candidate rows for criteria search from the database (up to
+     * MAX_DB_RESULTS per query). Name searches query each name branch
+     * separately and merge the rows by id.
+     * Only the scoring columns are read; hydrate() fetches the rest for the top results.
+     * 
+     * @param result Marked incomplete if a name branch was cut off or failed
+     */
+    private List<FarmerResult> queryCandidates(SearchCriteria criteria, SharedConnection conn, SearchResult result)
+            throws SQLException {
+        // Criteria with the same shape share one compiled template and prepared statement
+        int shape = QueryTemplates.shapeOf(criteria);
+        if (!isNotEmpty(criteria.getName())) {
+            return queryTemplate(queryTemplates.get(searchTable(), shape), criteria, null, null, conn, 0);
+        }
+        
+        String searchName = fuzzyService.normalizeName(criteria.getName());
+        String searchSoundex = generateSearchSoundex(criteria.getName());
+        String table = searchTable();
+        List<QueryTemplates.Template> branches = new ArrayList<>();
+        for (QueryTemplates.NameBranch branch : QueryTemplates.NameBranch.values()) {
+            // A blank Soundex pattern would match every row
+            if (branch != QueryTemplates.NameBranch.PHONETIC || !searchSoundex.trim().isEmpty()) {
+                branches.add(queryTemplates.get(table, shape | branch.bit));
+            }
+        }
+        
+        List<List<FarmerResult>> branchResults = conn.fanOut ?
+            queryBranchesInParallel(branches, criteria, searchName, searchSoundex, conn) :
+            queryBranchesInSequence(branches, criteria, searchName, searchSoundex, conn);
+        if (branchResults.size() < branches.size()) {
+            result.setComplete(false);
+        }
+        
+        Map<String, FarmerResult> merged = new LinkedHashMap<>();
+        for (List<FarmerResult> rows : branchResults) {
+            for (FarmerResult farmer : rows) {
+                merged.putIfAbsent(farmer.getId(), farmer);
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+    
+    /**
+     * Run the name branches concurrently: the first on the caller's
+     * connection, the others on extra connections while any are free.
+     * Branches that no pool thread has started yet when the caller is done
+     * are run by the caller itself, so time spent queued never counts
+     * against a branch. A branch running longer than NAME_BRANCH_DEADLINE_MS
+     * is cut off.
+     * 
+     * @throws SQLException If every branch failed or was cut off
+     */
+    private List<List<FarmerResult>> queryBranchesInParallel(List<QueryTemplates.Template> branches,
+            SearchCriteria criteria, String searchName, String searchSoundex, SharedConnection conn)
+            throws SQLException {
+        BranchTask[] offloaded = new BranchTask[branches.size()];
+        boolean[] runByPool = new boolean[branches.size()];
+        ExecutorService executor = getNameExecutor();
+        Semaphore connections = branchConnections;
+        for (int i = 1; i < branches.size() && connections.tryAcquire(); i++) {
+            offloaded[i] = new BranchTask(branches.get(i), criteria, searchName, searchSoundex, connections);
+            offloaded[i].future = executor.submit(offloaded[i]);
+        }
+        
+        List<List<FarmerResult>> results = new ArrayList<>();
+        Throwable failure = null;
+        
+        // Caller's share: the first branch and every branch no pool thread has claimed
+        for (int i = 0; i < branches.size(); i++) {
+            if (offloaded[i] != null && !offloaded[i].claim()) {
+                runByPool[i] = true;
+                continue;
+            }
+            QueryTemplates.Template branch = branches.get(i);
+            try {
+                results.add(queryTemplate(branch, criteria, searchName, searchSoundex, conn,
+                    NAME_BRANCH_QUERY_TIMEOUT_SECONDS));
+            } catch (SQLException e) {
+                failure = e;
+                LogUtil.warn(CLASS_NAME, "Name branch " + branch.getNameBranch() + " failed: " + e.getMessage());
+            }
+        }
+        
+        // Branches running on pool threads, each until its own deadline
+        long deadlineNanos = TimeUnit.MILLISECONDS.toNanos(NAME_BRANCH_DEADLINE_MS);
+        for (int i = 0; i < branches.size(); i++) {
+            if (!runByPool[i]) {
+                continue;
+            }
+            BranchTask task = offloaded[i];
+            long startedAt = task.startedAt;
+            long remaining = startedAt != 0 ? startedAt + deadlineNanos - System.nanoTime() : deadlineNanos;
+            try {
+                results.add(task.future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                task.future.cancel(true);
+                LogUtil.warn(CLASS_NAME, "Name branch " + branches.get(i).getNameBranch() + " cut off after " +
+                    NAME_BRANCH_DEADLINE_MS + "ms");
+            } catch (ExecutionException e) {
+                failure = e.getCause();
+                LogUtil.warn(CLASS_NAME, "Name branch " + branches.get(i).getNameBranch() + " failed: " +
+                    failure.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (BranchTask other : offloaded) {
+                    if (other != null) {
+                        other.future.cancel(true);
+                    }
                 }
-
-                sql.append(String.join(" OR ", districtConditions));
-                sql.append(")");
+                break;
             }
-            
-            // Village filter - case-insensitive
-            if (isNotEmpty(criteria.getVillage())) {
-                sql.append(" AND LOWER(c_village) = LOWER(?)");
-                params.add(criteria.getVillage().trim());
+        }
+        
+        if (results.isEmpty()) {
+            throw failure != null ?
+                new SQLException("Name search failed: " + failure.getMessage(), failure) :
+                new SQLException("Name search timed out");
+        }
+        return results;
+    }
+    
+    /**
+     * A name branch handed to the pool, run by whichever of a pool thread
+     * or the caller claims it first. Holds one extra-connection permit,
+     * released by the claimer.
+     */
+    private class BranchTask implements Callable<List<FarmerResult>> {
+        private final QueryTemplates.Template branch;
+        private final SearchCriteria criteria;
+        private final String searchName;
+        private final String searchSoundex;
+        private final Semaphore connections;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private volatile long startedAt = 0;
+        private Future<List<FarmerResult>> future;
+        
+        BranchTask(QueryTemplates.Template branch, SearchCriteria criteria, String searchName,
+                   String searchSoundex, Semaphore connections) {
+            this.branch = branch;
+            this.criteria = criteria;
+            this.searchName = searchName;
+            this.searchSoundex = searchSoundex;
+            this.connections = connections;
+        }
+        
+        /**
+         * Claim the branch for the caller
+         * 
+         * @return false if a pool thread already started it
+         */
+        boolean claim() {
+            if (!claimed.compareAndSet(false, true)) {
+                return false;
             }
-            
-            // Community council filter
-            if (isNotEmpty(criteria.getCommunityCouncil())) {
-                sql.append(" AND c_community_council = ?");
-                params.add(criteria.getCommunityCouncil().trim());
+            connections.release();
+            return true;
+        }
+        
+        @Override
+        public List<FarmerResult> call() throws SQLException {
+            if (!claimed.compareAndSet(false, true)) {
+                return null;  // The caller ran it
             }
-            
-            // Partial ID filter
-            if (isNotEmpty(criteria.getPartialId())) {
-                sql.append(" AND c_national_id LIKE ?");
-                params.add("%" + criteria.getPartialId().trim() + "%");
+            startedAt = System.nanoTime();
+            try (SharedConnection branchConn = new SharedConnection(false)) {
+                return queryTemplate(branch, criteria, searchName, searchSoundex, branchConn,
+                    NAME_BRANCH_QUERY_TIMEOUT_SECONDS);
+            } finally {
+                connections.release();
             }
-            
-            // Partial phone filter
-            if (isNotEmpty(criteria.getPartialPhone())) {
-                String normalizedPartial = fuzzyService.normalizePhone(criteria.getPartialPhone());
-                sql.append(" AND c_phone_normalized LIKE ?");
-                params.add("%" + normalizedPartial + "%");
+        }
+    }
+    
+    /**
+     * Run the name branches one after another on the caller's connection
+     * (batch workers), skipping branches that fail
+     */
+    private List<List<FarmerResult>> queryBranchesInSequence(List<QueryTemplates.Template> branches,
+            SearchCriteria criteria, String searchName, String searchSoundex, SharedConnection conn)
+            throws SQLException {
+        List<List<FarmerResult>> results = new ArrayList<>();
+        SQLException failure = null;
+        for (QueryTemplates.Template branch : branches) {
+            try {
+                results.add(queryTemplate(branch, criteria, searchName, searchSoundex, conn, 0));
+            } catch (SQLException e) {
+                failure = e;
+                LogUtil.warn(CLASS_NAME, "Name branch " + branch.getNameBranch() + " failed: " + e.getMessage());
             }
-            
-            // Cooperative filter
-            if (isNotEmpty(criteria.getCooperative())) {
-                sql.append(" AND c_cooperative_name = ?");
-                params.add(criteria.getCooperative().trim());
+        }
+        if (results.isEmpty() && failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+    
+    /**
+     * Run one candidate query template
+     * 
+     * @param timeoutSeconds Statement query timeout, 0 for none
+     */
+    private List<FarmerResult> queryTemplate(QueryTemplates.Template template, SearchCriteria criteria,
+            String searchName, String searchSoundex, SharedConnection conn, int timeoutSeconds)
+            throws SQLException {
+        List<FarmerResult> rawResults = new ArrayList<>();
+        PreparedStatement ps = conn.prepare(template.getSql());
+        ps.setQueryTimeout(timeoutSeconds);
+        int limitIndex = template.bind(ps, criteria, searchName, searchSoundex);
+        ps.setInt(limitIndex, MAX_DB_RESULTS);
+        
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                rawResults.add(mapScoringColumns(rs));
             }
-            
-            // Name search (fuzzy via LIKE, trigram similarity, and soundex)
-            if (isNotEmpty(criteria.getName())) {
-                String searchName = fuzzyService.normalizeName(criteria.getName());
-                String searchSoundex = generateSearchSoundex(criteria.getName());
-
-                // Use pg_trgm similarity() for fuzzy matching (finds "Tabo" when searching "Thabo")
-                // Compare against first_name and last_name separately for better matching
-                // Threshold 0.3 = 30% similarity minimum
-                sql.append(" AND (c_search_name LIKE ? OR c_name_soundex LIKE ?");
-                sql.append(" OR similarity(LOWER(c_first_name), ?) > 0.3");
-                sql.append(" OR similarity(LOWER(c_last_name), ?) > 0.3)");
-                params.add("%" + searchName + "%");
-                params.add("%" + searchSoundex + "%");
-                params.add(searchName);
-                params.add(searchName);
+        }
+        
+        return rawResults;
+    }
+    
+    /**
+     * Replace scored candidates with full rows, read with one IN-list query.
+     * Keeps rank order and scores; drops farmers deleted since scoring.
+     */
+    private List<FarmerResult> hydrate(List<FarmerResult> scored, SharedConnection conn) throws SQLException {
+        if (scored.isEmpty()) {
+            return scored;
+        }
+        
+        String sql = "SELECT " + FARMER_COLUMNS + " FROM " + searchTable() + " WHERE id IN (" +
+            String.join(", ", Collections.nCopies(scored.size(), "?")) + ")";
+        PreparedStatement ps = conn.prepare(sql);
+        for (int i = 0; i < scored.size(); i++) {
+            ps.setString(i + 1, scored.get(i).getId());
+        }
+        
+        Map<String, FarmerResult> rows = new HashMap<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                FarmerResult farmer = mapResultSetToFarmer(rs);
+                rows.put(farmer.getId(), farmer);
             }
-            
-            // Limit results
-            sql.append(" LIMIT ?");
-            params.add(MAX_DB_RESULTS);
-            
-            // Execute query
-            DataSource ds = getDataSource();
-            List<FarmerResult> rawResults = new ArrayList<>();
-            
-            try (Connection conn = ds.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql.toString())) {
-                
-                // Set parameters
-                for (int i = 0; i < params.size(); i++) {
-                    Object param = params.get(i);
-                    if (param instanceof String) {
-                        ps.setString(i + 1, (String) param);
-                    } else if (param instanceof Integer) {
-                        ps.setInt(i + 1, (Integer) param);
-                    }
+        }
+        
+        List<FarmerResult> hydrated = new ArrayList<>(scored.size());
+        for (FarmerResult candidate : scored) {
+            FarmerResult farmer = rows.get(candidate.getId());
+            if (farmer != null) {
+                farmer.setRelevanceScore(candidate.getRelevanceScore());
+                hydrated.add(farmer);
+            }
+        }
+        return hydrated;
+    }
+    
+    // =========================================================================
+    // BATCH SEARCH
+    // =========================================================================
+    
+    /**
+     * Run many searches at once. Identical criteria run once; the rest are
+     * pulled by up to BATCH_THREADS workers from the shared batch pool, each
+     * reusing one connection and its prepared statements across its items.
+     * 
+     * @param criteriaList Criteria in request order (at most MAX_BATCH_SIZE)
+     * @return One result per criteria, in the same order. Failed or timed out
+     *         items have success=false and an error message.
+     */
+    public List<SearchResult> searchBatch(List<SearchCriteria> criteriaList) {
+        // Distinct criteria and the positions that asked for each
+        Map<String, List<Integer>> positionsByKey = new LinkedHashMap<>();
+        List<SearchCriteria> distinct = new ArrayList<>();
+        for (int i = 0; i < criteriaList.size(); i++) {
+            SearchCriteria criteria = criteriaList.get(i);
+            String key = criteria != null ? SearchResultCache.canonicalKey(criteria) : "#" + i;
+            List<Integer> positions = positionsByKey.get(key);
+            if (positions == null) {
+                positions = new ArrayList<>();
+                positionsByKey.put(key, positions);
+                distinct.add(criteria);
+            }
+            positions.add(i);
+        }
+        
+        AtomicReferenceArray<SearchResult> distinctResults = new AtomicReferenceArray<>(distinct.size());
+        AtomicInteger nextItem = new AtomicInteger();
+        Runnable worker = () -> {
+            // Each worker already holds a connection, so name branches run in sequence on it
+            try (SharedConnection conn = new SharedConnection(false)) {
+                int item;
+                while ((item = nextItem.getAndIncrement()) < distinct.size() &&
+                       !Thread.currentThread().isInterrupted()) {
+                    distinctResults.set(item, search(distinct.get(item), conn));
                 }
-                
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        rawResults.add(mapResultSetToFarmer(rs));
-                    }
+            }
+        };
+        
+        List<Future<?>> workers = new ArrayList<>();
+        ExecutorService executor = getBatchExecutor();
+        for (int i = 0; i < Math.min(BATCH_THREADS, distinct.size()); i++) {
+            workers.add(executor.submit(worker));
+        }
+        
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(BATCH_TIMEOUT_SECONDS);
+        try {
+            for (Future<?> future : workers) {
+                future.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+            }
+        } catch (TimeoutException e) {
+            LogUtil.warn(CLASS_NAME, "Batch search timed out after " + BATCH_TIMEOUT_SECONDS + "s");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LogUtil.error(CLASS_NAME, e.getCause(), "Batch search worker failed");
+        } finally {
+            for (Future<?> future : workers) {
+                future.cancel(true);
+            }
+        }
+        
+        // Fan results back out to request order
+        SearchResult[] results = new SearchResult[criteriaList.size()];
+        int item = 0;
+        for (List<Integer> positions : positionsByKey.values()) {
+            SearchResult result = distinctResults.get(item++);
+            if (result == null) {
+                result = new SearchResult();
+                result.setSuccess(false);
+                result.setErrorMessage("Search did not complete within " + BATCH_TIMEOUT_SECONDS + "s");
+            }
+            results[positions.get(0)] = result;
+            for (int i = 1; i < positions.size(); i++) {
+                int position = positions.get(i);
+                if (result.isComplete()) {
+                    results[position] = copyResult(result, result.getSearchTimeMs());
+                } else if (System.nanoTime() < deadline) {
+                    // A partial result is not shared; the duplicate gets its own search
+                    results[position] = search(criteriaList.get(position));
+                } else {
+                    SearchResult timedOut = new SearchResult();
+                    timedOut.setSuccess(false);
+                    timedOut.setErrorMessage("Search did not complete within " + BATCH_TIMEOUT_SECONDS + "s");
+                    results[position] = timedOut;
                 }
             }
-            
-            // Score and rank results in application layer
-            List<FarmerResult> scoredResults = scoreAndRank(rawResults, criteria);
-            
-            // Apply limit
-            int limit = Math.min(criteria.getLimit(), MAX_RETURN_RESULTS);
-            if (scoredResults.size() > limit) {
-                scoredResults = scoredResults.subList(0, limit);
+        }
+        return Arrays.asList(results);
+    }
+    
+    private synchronized ExecutorService getBatchExecutor() {
+        if (batchExecutor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            batchExecutor = Executors.newFixedThreadPool(BATCH_THREADS, r -> {
+                Thread thread = new Thread(r, "smart-search-batch-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return batchExecutor;
+    }
+    
+    private synchronized ExecutorService getNameExecutor() {
+        if (nameExecutor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            nameExecutor = Executors.newFixedThreadPool(NAME_BRANCH_CONNECTIONS, r -> {
+                Thread thread = new Thread(r, "smart-search-name-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return nameExecutor;
+    }
+    
+    /**
+     * Connection opened on first use and shared by consecutive searches,
+     * with its prepared statements cached by SQL text
+     */
+    private class SharedConnection implements AutoCloseable {
+        private Connection conn;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+        
+        // Whether name branches may run in parallel on connections of their own
+        private final boolean fanOut;
+        
+        SharedConnection() {
+            this(true);
+        }
+        
+        SharedConnection(boolean fanOut) {
+            this.fanOut = fanOut;
+        }
+        
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement ps = statements.get(sql);
+            if (ps == null) {
+                if (conn == null) {
+                    conn = getDataSource().getConnection();
+                }
+                ps = conn.prepareStatement(sql);
+                ps.setPoolable(true);  // Hint for pools and drivers that cache statements per connection
+                statements.put(sql, ps);
             }
-            
-            result.setFarmers(scoredResults);
-            result.setTotalCount(rawResults.size());
-            result.setResultType(scoredResults.isEmpty() ? 
-                SearchResultType.NO_RESULTS : SearchResultType.CRITERIA_MATCH);
-                
-        } catch (Exception e) {
-            LogUtil.error(CLASS_NAME, e, "Search by criteria failed");
-            result.setSuccess(false);
-            result.setErrorMessage("Database error: " + e.getMessage());
+            return ps;
         }
         
-        return result;
+        @Override
+        public void close() {
+            if (conn == null) {
+                return;
+            }
+            for (PreparedStatement ps : statements.values()) {
+                try {
+                    ps.close();
+                } catch (SQLException e) {
+                    // Closed with the connection
+                }
+            }
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                LogUtil.warn(CLASS_NAME, "Failed to close search connection: " + e.getMessage());
+            }
+            conn = null;
+            statements.clear();
+        }
     }
     
     // =========================================================================
@@ -525,8 +1010,10 @@ public class FarmerSearchService {
      * Score and rank results in application layer
      */
     public List<FarmerResult> scoreAndRank(List<FarmerResult> results, SearchCriteria criteria) {
+        NameQuery nameQuery = fuzzyService.compileNameQuery(criteria.getName());
+        
         for (FarmerResult farmer : results) {
-            int score = calculateRelevanceScore(farmer, criteria);
+            int score = calculateRelevanceScore(farmer, criteria, nameQuery);
             farmer.setRelevanceScore(score);
         }
         
@@ -536,19 +1023,42 @@ public class FarmerSearchService {
         return results;
     }
     
+    /**
+     * Score results and keep the best {@code limit} in a bounded min-heap.
+     * Same ordering as scoreAndRank (ties keep input order) in O(n log k).
+     * Stops scoring once every kept result already has the maximum score.
+     */
+    public List<FarmerResult> scoreAndSelectTop(List<FarmerResult> results, SearchCriteria criteria, int limit) {
+        TopKSelector<FarmerResult> top = new TopKSelector<>(limit);
+        NameQuery nameQuery = fuzzyService.compileNameQuery(criteria.getName());
+        
+        for (FarmerResult farmer : results) {
+            // Relevance is clamped to 0-100, so nothing can beat a heap full of 100s
+            if (!top.canAccept(EXACT_MATCH_SCORE)) {
+                break;
+            }
+            int score = calculateRelevanceScore(farmer, criteria, nameQuery);
+            farmer.setRelevanceScore(score);
+            top.offer(score, farmer);
+        }
+        
+        return top.toSortedList();
+    }
+    
     /**
      * Calculate relevance score for a single farmer result
      */
-    private int calculateRelevanceScore(FarmerResult farmer, SearchCriteria criteria) {
+    private int calculateRelevanceScore(FarmerResult farmer, SearchCriteria criteria, NameQuery nameQuery) {
         // Name matching score (Issue #22)
         int nameScore = BASE_FUZZY_SCORE;
         
-        if (isNotEmpty(criteria.getName())) {
+        if (nameQuery != null) {
             nameScore = fuzzyService.calculateNameRelevanceScore(
-                criteria.getName(),
-                farmer.getFirstName(),
-                farmer.getLastName(),
-                farmer.getSoundex()
+                nameQuery,
+                farmer.getNormalizedFirstName(),
+                farmer.getNormalizedLastName(),
+                farmer.getFirstNameSoundexKey(),
+                farmer.getLastNameSoundexKey()
             );
         }
         
@@ -570,10 +1080,15 @@ public class FarmerSearchService {
      * Get villages for autocomplete, optionally filtered by district
      */
     public List<Map<String, Object>> getVillages(String districtCode, String query) {
+        AutocompleteIndex autocomplete = getAutocompleteIndex();
+        if (autocomplete != null) {
+            return autocomplete.villages(districtCode, query, MAX_AUTOCOMPLETE_RESULTS);
+        }
+        
         List<Map<String, Object>> villages = new ArrayList<>();
         
         StringBuilder sql = new StringBuilder();
-        sql.append("SELECT c_village, COUNT(*) as farmer_count FROM ").append(INDEX_TABLE);
+        sql.append("SELECT c_village, COUNT(*) as farmer_count FROM ").append(searchTable());
         sql.append(" WHERE c_village IS NOT NULL AND c_village != ''");
         
         List<Object> params = new ArrayList<>();
@@ -619,10 +1134,15 @@ public class FarmerSearchService {
      * Get community councils for autocomplete, optionally filtered by district
      */
     public List<Map<String, Object>> getCommunityCouncils(String districtCode) {
+        AutocompleteIndex autocomplete = getAutocompleteIndex();
+        if (autocomplete != null) {
+            return autocomplete.communityCouncils(districtCode, MAX_CC_AUTOCOMPLETE_RESULTS);
+        }
+        
         List<Map<String, Object>> councils = new ArrayList<>();
         
         StringBuilder sql = new StringBuilder();
-        sql.append("SELECT c_community_council, COUNT(*) as farmer_count FROM ").append(INDEX_TABLE);
+        sql.append("SELECT c_community_council, COUNT(*) as farmer_count FROM ").append(searchTable());
         sql.append(" WHERE c_community_council IS NOT NULL AND c_community_council != ''");
         
         List<Object> params = new ArrayList<>();
@@ -663,10 +1183,15 @@ public class FarmerSearchService {
      * Get cooperatives for autocomplete, optionally filtered by district and query
      */
     public List<Map<String, Object>> getCooperatives(String districtCode, String query) {
+        AutocompleteIndex autocomplete = getAutocompleteIndex();
+        if (autocomplete != null) {
+            return autocomplete.cooperatives(districtCode, query, MAX_AUTOCOMPLETE_RESULTS);
+        }
+        
         List<Map<String, Object>> cooperatives = new ArrayList<>();
         
         StringBuilder sql = new StringBuilder();
-        sql.append("SELECT c_cooperative_name, COUNT(*) as farmer_count FROM ").append(INDEX_TABLE);
+        sql.append("SELECT c_cooperative_name, COUNT(*) as farmer_count FROM ").append(searchTable());
         sql.append(" WHERE c_cooperative_name IS NOT NULL AND c_cooperative_name != ''");
         
         List<Object> params = new ArrayList<>();
@@ -708,6 +1233,56 @@ public class FarmerSearchService {
         return cooperatives;
     }
     
+    /**
+     * Get the autocomplete dictionaries, loading them on first use.
+     * The first successful load starts a background rebuild every
+     * AUTOCOMPLETE_REFRESH_INTERVAL_MINUTES. Returns null if loading failed
+     * recently, in which case callers query the view directly.
+     */
+    private AutocompleteIndex getAutocompleteIndex() {
+        AutocompleteIndex autocomplete = autocompleteIndex;
+        if (autocomplete != null) {
+            return autocomplete;
+        }
+        
+        synchronized (autocompleteLock) {
+            if (autocompleteIndex != null) {
+                return autocompleteIndex;
+            }
+            if (System.currentTimeMillis() - autocompleteLoadFailedAt < AUTOCOMPLETE_RETRY_DELAY_MS) {
+                return null;
+            }
+            
+            reloadAutocompleteIndex();
+            if (autocompleteIndex != null && autocompleteExecutor == null) {
+                autocompleteExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "smart-search-autocomplete");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                autocompleteExecutor.scheduleWithFixedDelay(this::reloadAutocompleteIndex,
+                    AUTOCOMPLETE_REFRESH_INTERVAL_MINUTES, AUTOCOMPLETE_REFRESH_INTERVAL_MINUTES, TimeUnit.MINUTES);
+            }
+            return autocompleteIndex;
+        }
+    }
+    
+    /**
+     * Rebuild the autocomplete dictionaries and swap them in.
+     * On failure the previous dictionaries stay in use.
+     */
+    private void reloadAutocompleteIndex() {
+        long startTime = System.currentTimeMillis();
+        try (Connection conn = getDataSource().getConnection()) {
+            autocompleteIndex = AutocompleteIndex.load(conn, searchTable());
+            LogUtil.debug(CLASS_NAME, "Autocomplete dictionaries loaded in " +
+                (System.currentTimeMillis() - startTime) + "ms");
+        } catch (Exception e) {
+            autocompleteLoadFailedAt = System.currentTimeMillis();
+            LogUtil.error(CLASS_NAME, e, "Autocomplete dictionary load failed");
+        }
+    }
+    
     /**
      * Get single farmer by index ID
      */
@@ -716,7 +1291,22 @@ public class FarmerSearchService {
             return null;
         }
         
-        String sql = "SELECT * FROM " + INDEX_TABLE + " WHERE id = ?";
+        FarmerIndex index = farmerIndex;
+        if (index != null) {
+            FarmerResult farmer = index.get(id.trim());
+            if (farmer != null) {
+                farmer.setRelevanceScore(EXACT_MATCH_SCORE);
+            }
+            return farmer;
+        }
+        
+        FarmerResult cached = farmerIdCache.get(id.trim());
+        if (cached != null) {
+            return cached;
+        }
+        long cacheGeneration = farmerIdCache.getGeneration();
+        
+        String sql = "SELECT " + FARMER_COLUMNS + " FROM " + searchTable() + " WHERE id = ?";
         
         try {
             DataSource ds = getDataSource();
@@ -729,6 +1319,7 @@ public class FarmerSearchService {
                     if (rs.next()) {
                         FarmerResult farmer = mapResultSetToFarmer(rs);
                         farmer.setRelevanceScore(EXACT_MATCH_SCORE);
+                        farmerIdCache.put(farmer, cacheGeneration);
                         return farmer;
                     }
                 }
@@ -740,43 +1331,454 @@ public class FarmerSearchService {
         return null;
     }
     
+    /**
+     * Get many farmers by index ID: from the memory index when loaded,
+     * otherwise from the ID cache with one IN-list query per
+     * LOOKUP_IN_LIST_SIZE misses.
+     * 
+     * @param ids Farmer index IDs (blank and duplicate IDs are skipped)
+     * @return Found farmers keyed by ID, in request order
+     */
+    public Map<String, FarmerResult> getFarmersByIds(Collection<String> ids) throws SQLException {
+        Map<String, FarmerResult> farmers = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        FarmerIndex index = farmerIndex;
+        
+        for (String rawId : ids) {
+            if (!isNotEmpty(rawId)) {
+                continue;
+            }
+            String id = rawId.trim();
+            if (farmers.containsKey(id)) {
+                continue;
+            }
+            FarmerResult farmer = index != null ? index.get(id) : farmerIdCache.get(id);
+            if (farmer != null) {
+                farmer.setRelevanceScore(EXACT_MATCH_SCORE);
+            } else if (index == null) {
+                missing.add(id);
+            }
+            farmers.put(id, farmer);  // Placeholder keeps request order
+        }
+        
+        if (!missing.isEmpty()) {
+            long cacheGeneration = farmerIdCache.getGeneration();
+            try (Connection conn = getDataSource().getConnection()) {
+                for (int from = 0; from < missing.size(); from += LOOKUP_IN_LIST_SIZE) {
+                    List<String> chunk = missing.subList(from, Math.min(from + LOOKUP_IN_LIST_SIZE, missing.size()));
+                    String sql = "SELECT " + FARMER_COLUMNS + " FROM " + searchTable() + " WHERE id IN (" +
+                        String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+                    
+                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                        for (int i = 0; i < chunk.size(); i++) {
+                            ps.setString(i + 1, chunk.get(i));
+                        }
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                FarmerResult farmer = mapResultSetToFarmer(rs);
+                                farmer.setRelevanceScore(EXACT_MATCH_SCORE);
+                                farmerIdCache.put(farmer, cacheGeneration);
+                                farmers.put(farmer.getId(), farmer);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        
+        farmers.values().removeIf(Objects::isNull);
+        return farmers;
+    }
+    
+    /**
+     * Get the farmer ID cache (for status and counters)
+     */
+    public FarmerIdCache getFarmerIdCache() {
+        return farmerIdCache;
+    }
+    
+    /**
+     * Get the criteria query templates (for status and counters)
+     */
+    public QueryTemplates getQueryTemplates() {
+        return queryTemplates;
+    }
+    
+    // =========================================================================
+    // MEMORY INDEX
+    // =========================================================================
+    
+    /**
+     * Enable or disable the resident memory index.
+     * Enabling starts a background load; searches use SQL until it completes.
+     * Disabling drops the index immediately.
+     * 
+     * @param enabled true to answer criteria searches from memory
+     */
+    public synchronized void setMemoryIndexEnabled(boolean enabled) {
+        if (enabled == memoryIndexEnabled) {
+            return;
+        }
+        memoryIndexEnabled = enabled;
+        
+        if (enabled) {
+            LogUtil.info(CLASS_NAME, "Memory index enabled, scheduling load");
+            indexExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "smart-search-index");
+                thread.setDaemon(true);
+                return thread;
+            });
+            indexExecutor.scheduleWithFixedDelay(this::reloadMemoryIndex,
+                0, INDEX_RELOAD_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        } else {
+            LogUtil.info(CLASS_NAME, "Memory index disabled");
+            stopMemoryIndex();
+            getIndexSnapshot().delete();
+        }
+    }
+    
+    /**
+     * Restore the memory index from its snapshot in the background (bundle start).
+     * A snapshot only exists if the index was enabled when the plugin last ran,
+     * so a restored index is enabled straight away and then brought up to date
+     * by the regular background reload. If the API plugin's setting has since
+     * been turned off, the next request disables it again.
+     */
+    public void warmUp() {
+        Thread thread = new Thread(() -> {
+            try {
+                FarmerIndex restored = getIndexSnapshot().read(fuzzyService);
+                if (restored == null) {
+                    return;
+                }
+                synchronized (this) {
+                    if (!memoryIndexEnabled) {
+                        farmerIndex = restored;
+                        setMemoryIndexEnabled(true);
+                    }
+                }
+            } catch (Exception e) {
+                LogUtil.error(CLASS_NAME, e, "Memory index warm-up failed");
+            }
+        }, "smart-search-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Check if criteria searches are currently answered from memory
+     */
+    public boolean isMemoryIndexReady() {
+        return farmerIndex != null;
+    }
+    
+    /**
+     * Get the memory index (null if disabled or still loading)
+     */
+    public FarmerIndex getMemoryIndex() {
+        return farmerIndex;
+    }
+    
+    /**
+     * Rebuild the memory index from the database and swap it in atomically.
+     * Farmers refreshed while the load was running are re-applied afterwards.
+     */
+    public void reloadMemoryIndex() {
+        if (!memoryIndexEnabled) {
+            return;
+        }
+        
+        memoryIndexReloading = true;
+        try {
+            FarmerIndex fresh = new FarmerIndex(fuzzyService);
+            try (Connection conn = getDataSource().getConnection()) {
+                fresh.load(conn, searchTable());
+                if (!memoryIndexEnabled) {
+                    return;
+                }
+                
+                // Swap first so later refreshes land on the new index, then replay
+                farmerIndex = fresh;
+                memoryIndexReloading = false;
+                resultCache.invalidateAll();
+                for (String id : refreshedDuringReload) {
+                    refreshedDuringReload.remove(id);
+                    fresh.refresh(conn, IndexBackingService.VIEW, id);
+                }
+            }
+            writeIndexSnapshot(fresh);
+        } catch (Exception e) {
+            LogUtil.error(CLASS_NAME, e, "Memory index load failed, searches continue on SQL");
+        } finally {
+            memoryIndexReloading = false;
+        }
+    }
+    
+    /**
+     * Re-read one farmer from the database into the memory index and drop
+     * cached results for the farmer's old and new location.
+     * Call after the farmer's source records are created, changed or deleted.
+     * 
+     * @param id Farmer index ID
+     * @return true if the farmer exists after the refresh
+     */
+    public boolean refreshFarmer(String id) {
+        if (!isNotEmpty(id)) {
+            return false;
+        }
+        // Patches the backing table; the materialized view catches up on its schedule
+        IndexBackingService.getInstance().farmerChanged(id.trim());
+        StatisticsService.getInstance().farmersChanged(Collections.singletonList(id.trim()));
+        return applyFarmerChange(id);
+    }
+    
+    /**
+     * Refresh one farmer in the memory index and result caches
+     */
+    private boolean applyFarmerChange(String id) {
+        String farmerId = id.trim();
+        farmerIdCache.invalidate(farmerId);
+        FarmerIndex index = farmerIndex;
+        if (memoryIndexReloading) {
+            refreshedDuringReload.add(farmerId);
+        }
+        if (index == null) {
+            // Previous location unknown without the index
+            resultCache.invalidateAll();
+            return getFarmerById(farmerId) != null;
+        }
+        
+        FarmerResult before = index.get(farmerId);
+        try (Connection conn = getDataSource().getConnection()) {
+            // Live view: the backing table or materialized view may not have the change yet
+            boolean exists = index.refresh(conn, IndexBackingService.VIEW, farmerId);
+            invalidateCachedResults(before);
+            invalidateCachedResults(exists ? index.get(farmerId) : null);
+            return exists;
+        } catch (Exception e) {
+            LogUtil.error(CLASS_NAME, e, "Memory index refresh failed for farmer " + id);
+            resultCache.invalidateAll();
+            return false;
+        }
+    }
+    
+    // =========================================================================
+    // RESULT CACHE
+    // =========================================================================
+    
+    /**
+     * Set the search result cache TTL (also used by the farmer ID cache)
+     * 
+     * @param seconds Entry time-to-live; 0 disables the caches
+     */
+    public void setResultCacheTtlSeconds(int seconds) {
+        boolean enabled = seconds > 0;
+        if (!enabled && resultCacheEnabled) {
+            resultCache.invalidateAll();
+            farmerIdCache.invalidateAll();
+        }
+        resultCacheEnabled = enabled;
+        resultCache.setTtlMs(Math.max(seconds, 0) * 1000L);
+        farmerIdCache.setTtlMs(Math.max(seconds, 0) * 1000L);
+    }
+    
+    /**
+     * Get the search result cache (for status and counters)
+     */
+    public SearchResultCache getResultCache() {
+        return resultCache;
+    }
+    
+    /**
+     * Drop cached results that could include a farmer at this location
+     */
+    private void invalidateCachedResults(FarmerResult farmer) {
+        if (farmer != null) {
+            resultCache.invalidate(farmer.getDistrictCode(), farmer.getDistrictName(), farmer.getVillage());
+        }
+    }
+    
+    /**
+     * Copy a result so cached instances are never handed out or mutated
+     */
+    private SearchResult copyResult(SearchResult source, long searchTimeMs) {
+        SearchResult copy = new SearchResult();
+        copy.setSuccess(source.isSuccess());
+        copy.setComplete(source.isComplete());
+        copy.setResultType(source.getResultType());
+        copy.setTotalCount(source.getTotalCount());
+        copy.setFarmers(new ArrayList<>(source.getFarmers()));
+        copy.setSearchTimeMs(searchTimeMs);
+        copy.setErrorMessage(source.getErrorMessage());
+        return copy;
+    }
+    
+    // =========================================================================
+    // LIFECYCLE
+    // =========================================================================
+    
+    /**
+     * Apply a batch of farmer changes (e.g. from IndexSyncService).
+     * Large batches reload the memory index in the background instead of
+     * refreshing farmer by farmer.
+     * 
+     * @param ids Farmer index IDs that were created, changed or deleted
+     */
+    public void farmersChanged(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        StatisticsService.getInstance().farmersChanged(ids);
+        
+        FarmerIndex index = farmerIndex;
+        if (index == null || ids.size() > MAX_FARMER_REFRESHES) {
+            resultCache.invalidateAll();
+            if (index != null) {
+                synchronized (this) {
+                    if (indexExecutor != null) {
+                        indexExecutor.execute(this::reloadMemoryIndex);
+                    }
+                }
+            } else if (memoryIndexReloading) {
+                for (String id : ids) {
+                    refreshedDuringReload.add(id.trim());
+                }
+            }
+            farmerIdCache.invalidateAll();
+            return;
+        }
+        
+        for (String id : ids) {
+            if (isNotEmpty(id)) {
+                applyFarmerChange(id);
+            }
+        }
+    }
+    
+    /**
+     * Stop all background work and drop in-memory state (bundle stop)
+     */
+    public synchronized void shutdown() {
+        // Persist incremental refreshes since the last load for the next start
+        FarmerIndex index = farmerIndex;
+        if (memoryIndexEnabled && index != null) {
+            writeIndexSnapshot(index);
+        }
+        stopMemoryIndex();
+        if (batchExecutor != null) {
+            batchExecutor.shutdownNow();
+            batchExecutor = null;
+        }
+        if (nameExecutor != null) {
+            nameExecutor.shutdownNow();
+            nameExecutor = null;
+            // Permits of branches that will never run are not released; start over
+            branchConnections = new Semaphore(NAME_BRANCH_CONNECTIONS);
+        }
+        synchronized (autocompleteLock) {
+            if (autocompleteExecutor != null) {
+                autocompleteExecutor.shutdownNow();
+                autocompleteExecutor = null;
+            }
+            autocompleteIndex = null;
+        }
+    }
+    
+    /**
+     * Write a memory index snapshot; failures only cost a slower next start
+     */
+    private void writeIndexSnapshot(FarmerIndex index) {
+        try {
+            getIndexSnapshot().write(index);
+        } catch (Exception e) {
+            LogUtil.warn(CLASS_NAME, "Could not write memory index snapshot: " + e.getMessage());
+        }
+    }
+    
+    private FarmerIndexSnapshot getIndexSnapshot() {
+        return new FarmerIndexSnapshot(new File(SetupManager.getBaseDirectory(), INDEX_SNAPSHOT_PATH));
+    }
+    
+    /**
+     * Stop background index work and drop the memory index
+     */
+    private synchronized void stopMemoryIndex() {
+        if (indexExecutor != null) {
+            indexExecutor.shutdownNow();
+            indexExecutor = null;
+        }
+        memoryIndexEnabled = false;
+        farmerIndex = null;
+        refreshedDuringReload.clear();
+        resultCache.invalidateAll();
+    }
+    
     // =========================================================================
     // HELPER METHODS
     // =========================================================================
     
     /**
-     * Map ResultSet row to FarmerResult
+     * Map a FARMER_COLUMNS row to FarmerResult (by column index)
      */
     private FarmerResult mapResultSetToFarmer(ResultSet rs) throws SQLException {
         FarmerResult farmer = new FarmerResult();
         
-        farmer.setId(rs.getString("id"));
-        farmer.setNationalId(rs.getString("c_national_id"));
-        farmer.setNationalIdMasked(maskNationalId(rs.getString("c_national_id")));
-        farmer.setFirstName(rs.getString("c_first_name"));
-        farmer.setLastName(rs.getString("c_last_name"));
-        farmer.setGender(rs.getString("c_gender"));
+        String nationalId = rs.getString(2);
+        farmer.setId(rs.getString(1));
+        farmer.setNationalId(nationalId);
+        farmer.setNationalIdMasked(maskNationalId(nationalId));
+        farmer.setFirstName(rs.getString(3));
+        farmer.setLastName(rs.getString(4));
+        farmer.setGender(rs.getString(5));
         
-        java.sql.Date dob = rs.getDate("c_date_of_birth");
+        java.sql.Date dob = rs.getDate(6);
         farmer.setDateOfBirth(dob != null ? dob.toString() : null);
         
-        farmer.setPhone(rs.getString("c_phone_display"));
-        farmer.setPhoneMasked(maskPhone(rs.getString("c_phone_display")));
-        farmer.setDistrictCode(rs.getString("c_district_code"));
-        farmer.setDistrictName(rs.getString("c_district_name"));
-        farmer.setVillage(rs.getString("c_village"));
-        farmer.setCommunityCouncil(rs.getString("c_community_council"));
-        farmer.setCooperativeName(rs.getString("c_cooperative_name"));
-        farmer.setSourceRecordId(rs.getString("c_source_record_id"));
-        farmer.setSoundex(rs.getString("c_name_soundex"));
+        String phone = rs.getString(7);
+        farmer.setPhone(phone);
+        farmer.setPhoneMasked(maskPhone(phone));
+        farmer.setDistrictCode(rs.getString(8));
+        farmer.setDistrictName(rs.getString(9));
+        farmer.setVillage(rs.getString(10));
+        farmer.setCommunityCouncil(rs.getString(11));
+        farmer.setCooperativeName(rs.getString(12));
+        farmer.setSourceRecordId(rs.getString(13));
+        farmer.setSoundex(rs.getString(14));
+        setScoringColumns(farmer);
         
         return farmer;
     }
     
+    /**
+     * Map a SCORING_COLUMNS row to a candidate holding only what scoring reads
+     */
+    private FarmerResult mapScoringColumns(ResultSet rs) throws SQLException {
+        FarmerResult farmer = new FarmerResult();
+        farmer.setId(rs.getString(1));
+        farmer.setFirstName(rs.getString(2));
+        farmer.setLastName(rs.getString(3));
+        farmer.setDistrictCode(rs.getString(4));
+        farmer.setVillage(rs.getString(5));
+        setScoringColumns(farmer);
+        return farmer;
+    }
+    
+    /**
+     * Precompute normalized names and Soundex keys used by relevance scoring
+     */
+    private void setScoringColumns(FarmerResult farmer) {
+        String first = farmer.getFirstName();
+        String last = farmer.getLastName();
+        farmer.setNormalizedFirstName(first != null ? first.toLowerCase().trim() : null);
+        farmer.setNormalizedLastName(last != null ? last.toLowerCase().trim() : null);
+        farmer.setFirstNameSoundexKey(fuzzyService.soundexKey(first));
+        farmer.setLastNameSoundexKey(fuzzyService.soundexKey(last));
+    }
+    
     /**
      * Mask national ID for display (show last 4 digits)
      */
-    private String maskNationalId(String nationalId) {
+    static String maskNationalId(String nationalId) {
         if (nationalId == null || nationalId.length() <= 4) {
             return nationalId;
         }
@@ -786,7 +1788,7 @@ public class FarmerSearchService {
     /**
      * Mask phone for display (show last 4 digits)
      */
-    private String maskPhone(String phone) {
+    static String maskPhone(String phone) {
         if (phone == null || phone.length() <= 4) {
             return phone;
         }
@@ -816,6 +1818,13 @@ public class FarmerSearchService {
         return soundexBuilder.toString();
     }
     
+    /**
+     * View or table searches read now (see IndexBackingService)
+     */
+    private static String searchTable() {
+        return IndexBackingService.getInstance().getSearchTable();
+    }
+    
     /**
      * Get Joget DataSource
      */
@@ -826,7 +1835,7 @@ public class FarmerSearchService {
     /**
      * Check if string is not empty
      */
-    private boolean isNotEmpty(String s) {
+    private static boolean isNotEmpty(String s) {
         return s != null && !s.trim().isEmpty();
     }
 }
@@ -1,14 +1,26 @@
 package global.govstack.smartsearch.service;
 
-import org.apache.commons.text.similarity.LevenshteinDistance;
+import global.govstack.smartsearch.service.phonetic.DoubleMetaphoneEncoder;
+import global.govstack.smartsearch.service.phonetic.PhoneticEncoder;
+import global.govstack.smartsearch.service.phonetic.SesothoPhoneticEncoder;
+import global.govstack.smartsearch.service.phonetic.SoundexEncoder;
 import org.joget.commons.util.LogUtil;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 /**
  * Fuzzy Match Service
  * 
  * Provides fuzzy matching capabilities for name searches:
  * - Levenshtein distance calculation for edit distance
  * - Soundex phonetic matching for similar-sounding names
+ * - Pluggable phonetic encoders (Soundex, Double Metaphone, Sesotho rules)
+ *   used by the memory index for phonetic candidate lookup
  * - Combined relevance scoring
  * 
  * All matching logic is in application layer, not database.
@@ -17,14 +29,27 @@ public class FuzzyMatchService {
 
     private static final String CLASS_NAME = FuzzyMatchService.class.getName();
     
-    // Apache Commons Text Levenshtein implementation
-    private final LevenshteinDistance levenshtein;
+    // Per-thread Levenshtein buffers: two DP rows and the case-folded shorter string
+    private static final ThreadLocal<int[][]> LEVENSHTEIN_ROWS =
+        ThreadLocal.withInitial(() -> new int[2][32]);
+    private static final ThreadLocal<char[][]> LEVENSHTEIN_CHARS =
+        ThreadLocal.withInitial(() -> new char[1][32]);
     
     // Singleton instance
     private static FuzzyMatchService instance;
     
+    // Packed Soundex key of "0000" (empty input)
+    private static final int EMPTY_SOUNDEX_KEY = '0' << 12;
+    
+    // Phonetic encoders applied when the memory index is built
+    private volatile List<PhoneticEncoder> phoneticEncoders;
+    
     private FuzzyMatchService() {
-        this.levenshtein = new LevenshteinDistance();
+        this.phoneticEncoders = Collections.unmodifiableList(Arrays.asList(
+            new SoundexEncoder(this),
+            new SesothoPhoneticEncoder(),
+            new DoubleMetaphoneEncoder()
+        ));
     }
     
     public static synchronized FuzzyMatchService getInstance() {
@@ -47,10 +72,107 @@ public class FuzzyMatchService {
      * @return Edit distance (0 = exact match)
      */
     public int levenshteinDistance(String s1, String s2) {
+        return levenshteinDistance(s1, s2, Integer.MAX_VALUE - 1);
+    }
+    
+    /**
+     * Calculate Levenshtein distance, giving up once it exceeds maxDistance.
+     * Case-insensitive and ignores surrounding whitespace, like
+     * levenshteinDistance(s1, s2), but folds chars in place and reuses
+     * thread-local row buffers, so it does not allocate per call.
+     * 
+     * @param s1 First string
+     * @param s2 Second string
+     * @param maxDistance Largest distance of interest
+     * @return Edit distance, or maxDistance + 1 if the distance exceeds maxDistance
+     */
+    public int levenshteinDistance(String s1, String s2, int maxDistance) {
         if (s1 == null || s2 == null) {
             return Integer.MAX_VALUE;
         }
-        return levenshtein.apply(s1.toLowerCase().trim(), s2.toLowerCase().trim());
+        
+        // Trim by index bounds instead of creating new strings
+        int aStart = 0;
+        int aEnd = s1.length();
+        while (aStart < aEnd && s1.charAt(aStart) <= ' ') aStart++;
+        while (aEnd > aStart && s1.charAt(aEnd - 1) <= ' ') aEnd--;
+        
+        int bStart = 0;
+        int bEnd = s2.length();
+        while (bStart < bEnd && s2.charAt(bStart) <= ' ') bStart++;
+        while (bEnd > bStart && s2.charAt(bEnd - 1) <= ' ') bEnd--;
+        
+        // Keep the shorter string in the DP row
+        String shorter = s1;
+        String longer = s2;
+        if (aEnd - aStart > bEnd - bStart) {
+            shorter = s2;
+            longer = s1;
+            int start = aStart;
+            int end = aEnd;
+            aStart = bStart;
+            aEnd = bEnd;
+            bStart = start;
+            bEnd = end;
+        }
+        int n = aEnd - aStart;
+        int m = bEnd - bStart;
+        
+        // Length difference is a lower bound on the distance
+        if (m - n > maxDistance) {
+            return maxDistance + 1;
+        }
+        if (n == 0) {
+            return m;
+        }
+        
+        int[][] rows = LEVENSHTEIN_ROWS.get();
+        if (rows[0].length <= n) {
+            rows[0] = new int[n + 1];
+            rows[1] = new int[n + 1];
+        }
+        char[][] chars = LEVENSHTEIN_CHARS.get();
+        if (chars[0].length < n) {
+            chars[0] = new char[n];
+        }
+        
+        char[] folded = chars[0];
+        for (int i = 0; i < n; i++) {
+            folded[i] = Character.toLowerCase(shorter.charAt(aStart + i));
+        }
+        
+        int[] previous = rows[0];
+        int[] current = rows[1];
+        for (int i = 0; i <= n; i++) {
+            previous[i] = i;
+        }
+        
+        for (int j = 1; j <= m; j++) {
+            char cb = Character.toLowerCase(longer.charAt(bStart + j - 1));
+            current[0] = j;
+            int rowMin = j;
+            
+            for (int i = 1; i <= n; i++) {
+                int cost = folded[i - 1] == cb ? 0 : 1;
+                int value = Math.min(Math.min(current[i - 1] + 1, previous[i] + 1), previous[i - 1] + cost);
+                current[i] = value;
+                if (value < rowMin) {
+                    rowMin = value;
+                }
+            }
+            
+            // Row minimums never decrease, so the distance can only be larger
+            if (rowMin > maxDistance) {
+                return maxDistance + 1;
+            }
+            
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        
+        int distance = previous[n];
+        return distance <= maxDistance ? distance : maxDistance + 1;
     }
     
     /**
@@ -65,15 +187,12 @@ public class FuzzyMatchService {
         if (s1 == null || s2 == null) {
             return 0.0;
         }
-        String str1 = s1.toLowerCase().trim();
-        String str2 = s2.toLowerCase().trim();
-        
-        int maxLen = Math.max(str1.length(), str2.length());
+        int maxLen = Math.max(s1.trim().length(), s2.trim().length());
         if (maxLen == 0) {
             return 1.0; // Both empty strings
         }
         
-        int distance = levenshtein.apply(str1, str2);
+        int distance = levenshteinDistance(s1, s2);
         return 1.0 - ((double) distance / maxLen);
     }
     
@@ -137,6 +256,53 @@ public class FuzzyMatchService {
         return result.toString();
     }
     
+    /**
+     * Generate the Soundex code packed into an int.
+     * The first letter takes the high 16 bits and each of the three digits
+     * 4 bits, so two names sound alike exactly when their keys are equal.
+     * Same algorithm as soundex(String), without building a String.
+     * 
+     * @param s Input string
+     * @return Packed Soundex key
+     */
+    public int soundexKey(String s) {
+        if (s == null) {
+            return EMPTY_SOUNDEX_KEY;
+        }
+        
+        int start = 0;
+        int end = s.length();
+        while (start < end && s.charAt(start) <= ' ') start++;
+        while (end > start && s.charAt(end - 1) <= ' ') end--;
+        if (start == end) {
+            return EMPTY_SOUNDEX_KEY;
+        }
+        
+        char firstLetter = Character.toUpperCase(s.charAt(start));
+        int key = firstLetter;
+        int digits = 0;
+        char lastCode = soundexCode(firstLetter);
+        
+        for (int i = start + 1; i < end && digits < 3; i++) {
+            char code = soundexCode(Character.toUpperCase(s.charAt(i)));
+            if (code != '0' && code != lastCode) {
+                key = (key << 4) | (code - '0');
+                digits++;
+            }
+            if (code != '0') {
+                lastCode = code;
+            }
+        }
+        
+        // Pad with zero digits
+        while (digits < 3) {
+            key <<= 4;
+            digits++;
+        }
+        
+        return key;
+    }
+    
     /**
      * Get Soundex digit for a character
      */
@@ -187,10 +353,117 @@ public class FuzzyMatchService {
         return firstSoundex + " " + lastSoundex;
     }
     
+    // =========================================================================
+    // PHONETIC ENCODERS
+    // =========================================================================
+    
+    /**
+     * Get the phonetic encoders used for candidate lookup
+     */
+    public List<PhoneticEncoder> getPhoneticEncoders() {
+        return phoneticEncoders;
+    }
+    
+    /**
+     * Replace the phonetic encoders. Takes effect on the next memory index load.
+     * 
+     * @param encoders Encoders to apply (order is not significant)
+     */
+    public void setPhoneticEncoders(List<PhoneticEncoder> encoders) {
+        this.phoneticEncoders = Collections.unmodifiableList(new ArrayList<>(encoders));
+        LogUtil.info(CLASS_NAME, "Phonetic encoders set to " + encoders.size() + " encoder(s)");
+    }
+    
+    // =========================================================================
+    // TRIGRAM SIMILARITY
+    // =========================================================================
+    
+    /**
+     * Calculate trigram similarity compatible with PostgreSQL pg_trgm similarity().
+     * Lets in-memory matching use the same threshold as the SQL name clause.
+     * 
+     * @param s1 First string
+     * @param s2 Second string
+     * @return Shared trigrams divided by total distinct trigrams (0.0 to 1.0)
+     */
+    public double trigramSimilarity(String s1, String s2) {
+        if (s1 == null || s2 == null) {
+            return 0.0;
+        }
+        Set<String> trigrams1 = trigrams(s1);
+        Set<String> trigrams2 = trigrams(s2);
+        if (trigrams1.isEmpty() || trigrams2.isEmpty()) {
+            return 0.0;
+        }
+        
+        int shared = 0;
+        for (String trigram : trigrams1) {
+            if (trigrams2.contains(trigram)) {
+                shared++;
+            }
+        }
+        return (double) shared / (trigrams1.size() + trigrams2.size() - shared);
+    }
+    
+    /**
+     * Extract pg_trgm style trigrams.
+     * Each word (run of letters/digits) is lowercased and padded with two
+     * leading spaces and one trailing space before splitting into trigrams.
+     * 
+     * @param s Input string
+     * @return Set of distinct trigrams
+     */
+    public Set<String> trigrams(String s) {
+        Set<String> result = new HashSet<>();
+        if (s == null) {
+            return result;
+        }
+        
+        String lower = s.toLowerCase();
+        int i = 0;
+        while (i < lower.length()) {
+            // Skip separators
+            while (i < lower.length() && !Character.isLetterOrDigit(lower.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < lower.length() && Character.isLetterOrDigit(lower.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                String padded = "  " + lower.substring(start, i) + " ";
+                for (int j = 0; j + 3 <= padded.length(); j++) {
+                    result.add(padded.substring(j, j + 3));
+                }
+            }
+        }
+        return result;
+    }
+    
     // =========================================================================
     // COMBINED RELEVANCE SCORING
     // =========================================================================
     
+    /**
+     * Compile a search name once per request for repeated scoring.
+     * 
+     * @param searchName The search query name
+     * @return Compiled query, or null if the name is empty
+     */
+    public NameQuery compileNameQuery(String searchName) {
+        if (searchName == null || searchName.trim().isEmpty()) {
+            return null;
+        }
+        
+        String normalized = searchName.toLowerCase().trim();
+        String[] tokens = normalized.split("\\s+");
+        int[] soundexKeys = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            soundexKeys[i] = soundexKey(tokens[i]);
+        }
+        return new NameQuery(normalized, tokens, soundexKeys);
+    }
+    
     /**
      * Calculate combined relevance score for a name match.
      * 
@@ -215,6 +488,8 @@ public class FuzzyMatchService {
             return 50; // Neutral score for no name search
         }
         
+        // Callers scoring many candidates should compile the query once and use
+        // the precomputed overload; this path keeps the original string-based checks
         String search = searchName.toLowerCase().trim();
         String fullName = ((candidateFirstName != null ? candidateFirstName : "") + " " +
                           (candidateLastName != null ? candidateLastName : "")).toLowerCase().trim();
@@ -231,6 +506,10 @@ public class FuzzyMatchService {
         String first = candidateFirstName != null ? candidateFirstName.toLowerCase() : "";
         String last = candidateLastName != null ? candidateLastName.toLowerCase() : "";
         
+        // Beyond this distance a part's penalty drives the score below zero
+        // whatever the other parts add, so larger distances need not be exact
+        int maxUsefulDistance = (50 + 35 * searchParts.length) / 5;
+        
         for (String part : searchParts) {
             // Prefix match bonus
             if (first.startsWith(part) || last.startsWith(part)) {
@@ -238,8 +517,8 @@ public class FuzzyMatchService {
             }
             
             // Levenshtein penalty
-            int firstDist = levenshteinDistance(part, first);
-            int lastDist = levenshteinDistance(part, last);
+            int firstDist = levenshteinDistance(part, first, maxUsefulDistance);
+            int lastDist = levenshteinDistance(part, last, maxUsefulDistance);
             int minDist = Math.min(firstDist, lastDist);
             score -= minDist * 5;
             
@@ -254,6 +533,80 @@ public class FuzzyMatchService {
         return Math.max(0, Math.min(100, score));
     }
     
+    /**
+     * Calculate relevance score for a name match from precomputed fields.
+     * Same algorithm as calculateNameRelevanceScore(String, ...), with the
+     * query compiled once and the candidate's names already case-folded and
+     * trimmed, so the Soundex check is an int comparison per name.
+     * 
+     * @param query Compiled search query (null for no name search)
+     * @param firstName Candidate first name, lowercased and trimmed (may be null)
+     * @param lastName Candidate last name, lowercased and trimmed (may be null)
+     * @param firstSoundexKey Packed Soundex key of the first name
+     * @param lastSoundexKey Packed Soundex key of the last name
+     * @return Relevance score (0-100)
+     */
+    public int calculateNameRelevanceScore(NameQuery query,
+                                           String firstName,
+                                           String lastName,
+                                           int firstSoundexKey,
+                                           int lastSoundexKey) {
+        if (query == null) {
+            return 50; // Neutral score for no name search
+        }
+        
+        String first = firstName != null ? firstName : "";
+        String last = lastName != null ? lastName : "";
+        
+        // Exact match bonus
+        if (equalsFullName(query.getNormalized(), first, last)) {
+            return 100; // Perfect match
+        }
+        
+        int score = 50; // Base score
+        int tokenCount = query.getTokenCount();
+        int maxUsefulDistance = (50 + 35 * tokenCount) / 5;
+        
+        for (int i = 0; i < tokenCount; i++) {
+            String part = query.getToken(i);
+            
+            // Prefix match bonus
+            if (first.startsWith(part) || last.startsWith(part)) {
+                score += 20;
+            }
+            
+            // Levenshtein penalty
+            int firstDist = levenshteinDistance(part, first, maxUsefulDistance);
+            int lastDist = levenshteinDistance(part, last, maxUsefulDistance);
+            score -= Math.min(firstDist, lastDist) * 5;
+            
+            // Soundex match bonus
+            int partKey = query.getTokenSoundexKey(i);
+            if (partKey == firstSoundexKey || partKey == lastSoundexKey) {
+                score += 15;
+            }
+        }
+        
+        // Clamp to valid range
+        return Math.max(0, Math.min(100, score));
+    }
+    
+    /**
+     * Check search == (first + " " + last).trim() without concatenating
+     */
+    private boolean equalsFullName(String search, String first, String last) {
+        if (first.isEmpty()) {
+            return search.equals(last);
+        }
+        if (last.isEmpty()) {
+            return search.equals(first);
+        }
+        return search.length() == first.length() + 1 + last.length() &&
+               search.startsWith(first) &&
+               search.charAt(first.length()) == ' ' &&
+               search.endsWith(last);
+    }
+    
     /**
      * Calculate overall relevance score including location matches.
      * 
@@ -0,0 +1,321 @@
+package global.govstack.smartsearch.service;
+
+import org.joget.apps.app.service.AppUtil;
+import org.joget.commons.util.LogUtil;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Index Backing Service
+ *
+ * Chooses the relation that searches, exports, statistics and index loads
+ * read farmers from:
+ *
+ * - VIEW: the live v_farmer_search view (joins the form tables per query)
+ * - MATERIALIZED_VIEW: mv_farmer_search, refreshed with
+ *   REFRESH MATERIALIZED VIEW CONCURRENTLY (PostgreSQL)
+ * - TABLE: app_fd_farmer_search_index, refreshed by IndexSyncService
+ *
+ * The materialized view and table are refreshed on a background schedule.
+ * Until the first refresh after start or a mode change, reads fall back to
+ * the live view. Form edits reach the materialized view on its schedule;
+ * a farmer change notification patches that farmer's row in the table
+ * straight away (falling back to the live view only if that fails).
+ */
+public class IndexBackingService {
+
+    private static final String CLASS_NAME = IndexBackingService.class.getName();
+
+    static final String VIEW = "v_farmer_search";
+    static final String MATERIALIZED_VIEW = "mv_farmer_search";
+
+    // Without a schedule, farmer changes are picked up by one refresh shortly after the first of them
+    private static final long STALE_REFRESH_DELAY_SECONDS = 30;
+
+    /**
+     * Backing modes
+     */
+    public enum Mode {
+        VIEW,
+        MATERIALIZED_VIEW,
+        TABLE;
+
+        /**
+         * Parse a plugin setting ("view", "materializedView", "table"); VIEW if unknown
+         */
+        public static Mode parse(String value) {
+            if ("materializedView".equalsIgnoreCase(value) || "materialized_view".equalsIgnoreCase(value)) {
+                return MATERIALIZED_VIEW;
+            }
+            return "table".equalsIgnoreCase(value) ? TABLE : VIEW;
+        }
+    }
+
+    // Singleton
+    private static IndexBackingService instance;
+
+    private volatile Mode mode = Mode.VIEW;
+    private long refreshIntervalMinutes = 0;
+    private ScheduledExecutorService refreshExecutor;
+    private boolean refreshScheduled = false;
+    private final Object runLock = new Object();
+
+    // Pending until a refresh completes that started after the last change notification
+    private volatile boolean pending = true;
+    private final AtomicLong changeGeneration = new AtomicLong();
+
+    // Counters
+    private final AtomicLong refreshesCompleted = new AtomicLong();
+    private final AtomicLong refreshesFailed = new AtomicLong();
+    private volatile long lastRefreshAt = 0;
+    private volatile long lastRefreshDurationMs = 0;
+    private volatile long refreshedAsOf = 0;  // Start time of the last completed refresh
+    private volatile String lastError;
+
+    private IndexBackingService() {
+    }
+
+    public static synchronized IndexBackingService getInstance() {
+        if (instance == null) {
+            instance = new IndexBackingService();
+        }
+        return instance;
+    }
+
+    /**
+     * Relation to read farmers from now: the configured backing relation,
+     * or the live view while it is not refreshed yet
+     */
+    public String getSearchTable() {
+        Mode current = mode;
+        if (current == Mode.VIEW || pending) {
+            return VIEW;
+        }
+        return current == Mode.MATERIALIZED_VIEW ? MATERIALIZED_VIEW : IndexSyncService.TARGET_TABLE;
+    }
+
+    // =========================================================================
+    // SCHEDULING
+    // =========================================================================
+
+    /**
+     * Set the backing mode and refresh schedule. Non-view modes refresh once
+     * straight away and then every intervalMinutes (0: only after farmer changes).
+     */
+    public synchronized void configure(Mode newMode, long intervalMinutes) {
+        long minutes = Math.max(intervalMinutes, 0);
+        if (newMode == mode && minutes == refreshIntervalMinutes) {
+            return;
+        }
+        stopScheduler();
+        mode = newMode;
+        refreshIntervalMinutes = minutes;
+        pending = true;
+        changeGeneration.incrementAndGet();
+
+        if (newMode != Mode.VIEW) {
+            LogUtil.info(CLASS_NAME, "Searching " + getBackingName(newMode) + ", refresh every " + minutes +
+                " minutes; live view until the first refresh");
+            refreshExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "smart-search-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            if (minutes > 0) {
+                refreshExecutor.scheduleWithFixedDelay(this::refreshQuietly, 0, minutes, TimeUnit.MINUTES);
+            } else {
+                refreshExecutor.execute(this::refreshQuietly);
+            }
+        }
+    }
+
+    /**
+     * A farmer changed in the form tables. Reads stay on the backing
+     * relation: the table gets the farmer's row now, the materialized view
+     * on its next refresh (scheduled shortly after if it has no interval).
+     */
+    void farmerChanged(String id) {
+        Mode current = mode;
+        if (current == Mode.TABLE) {
+            try {
+                IndexSyncService.getInstance().syncFarmer(id);
+            } catch (SQLException | RuntimeException e) {
+                LogUtil.warn(CLASS_NAME, "Could not update farmer " + id + " in " + IndexSyncService.TARGET_TABLE +
+                    ", searches read the live view until the next refresh: " + e.getMessage());
+                markStale();
+            }
+        } else if (current == Mode.MATERIALIZED_VIEW) {
+            synchronized (this) {
+                if (refreshIntervalMinutes == 0) {
+                    scheduleRefresh();
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the live view until the backing relation has been refreshed again
+     */
+    private void markStale() {
+        changeGeneration.incrementAndGet();
+        pending = true;
+        synchronized (this) {
+            scheduleRefresh();
+        }
+    }
+
+    private void scheduleRefresh() {
+        if (refreshExecutor != null && !refreshScheduled) {
+            refreshScheduled = true;
+            refreshExecutor.schedule(this::refreshQuietly, STALE_REFRESH_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stop scheduled refreshes and search the live view (bundle stop)
+     */
+    public synchronized void shutdown() {
+        stopScheduler();
+        mode = Mode.VIEW;
+        refreshIntervalMinutes = 0;
+    }
+
+    private void stopScheduler() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+            refreshExecutor = null;
+        }
+        refreshScheduled = false;
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            // Already counted and logged; keep the schedule alive
+        }
+    }
+
+    // =========================================================================
+    // REFRESH
+    // =========================================================================
+
+    /**
+     * Refresh the backing relation. Concurrent calls wait for the running one.
+     */
+    public void refresh() throws SQLException {
+        synchronized (runLock) {
+            Mode current = mode;
+            if (current == Mode.VIEW) {
+                return;
+            }
+            synchronized (this) {
+                refreshScheduled = false;
+            }
+            long generation = changeGeneration.get();
+            long startTime = System.currentTimeMillis();
+
+            try {
+                if (current == Mode.MATERIALIZED_VIEW) {
+                    refreshMaterializedView();
+                } else {
+                    IndexSyncService.getInstance().sync();
+                }
+
+                lastRefreshDurationMs = System.currentTimeMillis() - startTime;
+                lastRefreshAt = System.currentTimeMillis();
+                refreshedAsOf = startTime;
+                lastError = null;
+                refreshesCompleted.incrementAndGet();
+
+                // Changes notified while refreshing may be missing; their scheduled refresh clears pending
+                if (mode == current && changeGeneration.get() == generation) {
+                    pending = false;
+                }
+                LogUtil.debug(CLASS_NAME, "Refreshed " + getBackingName(current) + " in " + lastRefreshDurationMs + "ms");
+
+            } catch (SQLException | RuntimeException e) {
+                refreshesFailed.incrementAndGet();
+                lastError = e.getMessage();
+                LogUtil.error(CLASS_NAME, e, "Refresh of " + getBackingName(current) +
+                    " failed" + (pending ? ", searches stay on the live view" : ""));
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * REFRESH MATERIALIZED VIEW, CONCURRENTLY once populated so readers are
+     * never blocked (needs the unique index on id from schema.sql)
+     */
+    private void refreshMaterializedView() throws SQLException {
+        try (Connection conn = getDataSource().getConnection()) {
+            String product = conn.getMetaData().getDatabaseProductName();
+            if (product == null || !product.toLowerCase().contains("postgres")) {
+                throw new SQLException("Materialized view mode needs PostgreSQL, not " + product);
+            }
+
+            boolean populated;
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT relispopulated FROM pg_class WHERE relname = ? AND relkind = 'm'")) {
+                ps.setString(1, MATERIALIZED_VIEW);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException(MATERIALIZED_VIEW + " does not exist (see database/schema.sql)");
+                    }
+                    populated = rs.getBoolean(1);
+                }
+            }
+
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("REFRESH MATERIALIZED VIEW " + (populated ? "CONCURRENTLY " : "") + MATERIALIZED_VIEW);
+            }
+        }
+    }
+
+    private static String getBackingName(Mode mode) {
+        switch (mode) {
+            case MATERIALIZED_VIEW: return MATERIALIZED_VIEW;
+            case TABLE: return IndexSyncService.TARGET_TABLE;
+            default: return VIEW;
+        }
+    }
+
+    // =========================================================================
+    // STATUS
+    // =========================================================================
+
+    public Mode getMode() { return mode; }
+    public long getRefreshIntervalMinutes() { return refreshIntervalMinutes; }
+    public boolean isRefreshPending() { return mode != Mode.VIEW && pending; }
+    public long getRefreshesCompleted() { return refreshesCompleted.get(); }
+    public long getRefreshesFailed() { return refreshesFailed.get(); }
+    public long getLastRefreshAt() { return lastRefreshAt; }
+    public long getLastRefreshDurationMs() { return lastRefreshDurationMs; }
+    public String getLastError() { return lastError; }
+
+    /**
+     * Age of the backing relation's data: time since the last completed
+     * refresh started (0 for the live view, -1 before the first refresh)
+     */
+    public long getStalenessMs() {
+        if (mode == Mode.VIEW) {
+            return 0;
+        }
+        long asOf = refreshedAsOf;
+        return asOf > 0 ? System.currentTimeMillis() - asOf : -1;
+    }
+
+    private DataSource getDataSource() {
+        return (DataSource) AppUtil.getApplicationContext().getBean("setupDataSource");
+    }
+}
@@ -0,0 +1,581 @@
+package global.govstack.smartsearch.service;
+
+import org.joget.apps.app.service.AppUtil;
+import org.joget.commons.util.LogUtil;
+import org.joget.commons.util.SetupManager;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Index Sync Service
+ *
+ * Incremental replacement for the nightly populate-index.sql rebuild of
+ * app_fd_farmer_search_index. Each run:
+ *
+ * 1. Reads the database clock as the new watermark
+ * 2. Pulls farmers whose farmerBasicInfo, farms_registry or farm_location row
+ *    has a dateModified after the previous watermark, in keyset-paginated
+ *    chunks ordered by farmer id
+ * 3. Upserts each chunk with one JDBC batch (ON DUPLICATE KEY UPDATE on
+ *    MySQL/MariaDB, ON CONFLICT on PostgreSQL, delete+insert elsewhere)
+ * 4. Periodically sweeps index rows whose source farmer no longer exists
+ *
+ * The first run (no watermark yet) copies every farmer. The watermark is
+ * kept in the Joget data directory and only advances after a run completes;
+ * a small overlap absorbs transactions that commit after the clock read.
+ * Changed and deleted ids are passed to FarmerSearchService so the memory
+ * index and result cache follow along.
+ */
+public class IndexSyncService {
+
+    private static final String CLASS_NAME = IndexSyncService.class.getName();
+
+    static final String TARGET_TABLE = "app_fd_farmer_search_index";
+
+    private static final int CHUNK_SIZE = 500;
+    private static final long WATERMARK_OVERLAP_MS = 5 * 1000L;
+    private static final int DELETE_SWEEP_EVERY_RUNS = 12;  // Hourly at the default 5 minute interval
+    private static final String WATERMARK_PATH = "smart-search" + File.separator + "index-sync.properties";
+
+    // Farmer query over the Joget form tables (same projection as populate-index.sql)
+    private static final String SOURCE_PROJECTION =
+        "SELECT bi.id, bi.c_national_id, bi.c_first_name, bi.c_last_name, bi.c_gender, bi.c_date_of_birth, " +
+        "bi.c_mobile_number, bi.c_cooperative_name, loc.c_district, loc.c_village, loc.c_communityCouncil, " +
+        "d.c_name AS district_name, fr.id AS source_record_id " +
+        "FROM app_fd_farmerBasicInfo bi " +
+        "INNER JOIN app_fd_farms_registry fr ON bi.c_parent_id = fr.id " +
+        "LEFT JOIN app_fd_farm_location loc ON loc.c_parent_id = fr.id " +
+        "LEFT JOIN app_fd_md03district d ON loc.c_district = d.c_code ";
+
+    private static final String SOURCE_SELECT = SOURCE_PROJECTION + "WHERE bi.id > ?";
+    private static final String SOURCE_SELECT_ONE = SOURCE_PROJECTION + "WHERE bi.id = ?";
+
+    private static final String CHANGED_SINCE =
+        " AND (bi.dateModified > ? OR fr.dateModified > ? OR loc.dateModified > ?)";
+
+    private static final String[] TARGET_COLUMNS = {
+        "id", "c_search_name", "c_search_text", "c_name_soundex", "c_national_id", "c_phone_normalized",
+        "c_district_code", "c_village", "c_community_council", "c_first_name", "c_last_name", "c_gender",
+        "c_date_of_birth", "c_phone_display", "c_district_name", "c_cooperative_name", "c_source_record_id",
+        "c_last_updated"
+    };
+
+    // Singleton
+    private static IndexSyncService instance;
+    private final FuzzyMatchService fuzzyService;
+
+    private ScheduledExecutorService syncExecutor;
+    private long intervalMinutes = 0;
+    private final Object runLock = new Object();
+
+    // Watermark (database time of the last completed run, null before the first)
+    private volatile Timestamp watermark;
+    private boolean watermarkLoaded = false;
+    private int runCount = 0;
+
+    // Counters
+    private final AtomicLong rowsUpserted = new AtomicLong();
+    private final AtomicLong rowsDeleted = new AtomicLong();
+    private final AtomicLong runsCompleted = new AtomicLong();
+    private final AtomicLong runsFailed = new AtomicLong();
+    private volatile long lastRunAt = 0;
+    private volatile long lastRunDurationMs = 0;
+    private volatile int lastRunRows = 0;
+    private volatile String lastError;
+
+    private IndexSyncService() {
+        this.fuzzyService = FuzzyMatchService.getInstance();
+    }
+
+    public static synchronized IndexSyncService getInstance() {
+        if (instance == null) {
+            instance = new IndexSyncService();
+        }
+        return instance;
+    }
+
+    // =========================================================================
+    // SCHEDULING
+    // =========================================================================
+
+    /**
+     * Run the sync every intervalMinutes on a background thread
+     *
+     * @param minutes Interval in minutes; 0 stops the sync
+     */
+    public synchronized void setSyncIntervalMinutes(long minutes) {
+        if (minutes == intervalMinutes) {
+            return;
+        }
+        stopScheduler();
+        intervalMinutes = Math.max(minutes, 0);
+
+        if (intervalMinutes > 0) {
+            LogUtil.info(CLASS_NAME, "Index sync every " + intervalMinutes + " minutes");
+            syncExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "smart-search-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncExecutor.scheduleWithFixedDelay(this::runQuietly, 0, intervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Stop scheduled syncs (bundle stop)
+     */
+    public synchronized void shutdown() {
+        stopScheduler();
+        intervalMinutes = 0;
+    }
+
+    private void stopScheduler() {
+        if (syncExecutor != null) {
+            syncExecutor.shutdownNow();
+            syncExecutor = null;
+        }
+    }
+
+    private void runQuietly() {
+        try {
+            sync();
+        } catch (Exception e) {
+            // Already counted and logged; keep the schedule alive
+        }
+    }
+
+    // =========================================================================
+    // SYNC
+    // =========================================================================
+
+    /**
+     * Run one incremental sync. Concurrent calls wait for the running one.
+     *
+     * @return Number of farmers upserted
+     */
+    public int sync() throws SQLException {
+        synchronized (runLock) {
+            long startTime = System.currentTimeMillis();
+            try (Connection conn = getDataSource().getConnection()) {
+                loadWatermark();
+                Timestamp runStart = databaseTime(conn);
+                Timestamp since = watermark != null ?
+                    new Timestamp(watermark.getTime() - WATERMARK_OVERLAP_MS) : null;
+
+                List<String> changed = new ArrayList<>();
+                int upserted = copyChanged(conn, since, changed);
+
+                List<String> deleted = new ArrayList<>();
+                if (since == null || ++runCount % DELETE_SWEEP_EVERY_RUNS == 0) {
+                    sweepDeleted(conn, deleted);
+                }
+
+                watermark = runStart;
+                saveWatermark();
+
+                lastRunRows = upserted;
+                lastRunDurationMs = System.currentTimeMillis() - startTime;
+                lastRunAt = System.currentTimeMillis();
+                lastError = null;
+                runsCompleted.incrementAndGet();
+
+                if (upserted > 0 || !deleted.isEmpty()) {
+                    LogUtil.info(CLASS_NAME, "Index sync: " + upserted + " upserted, " + deleted.size() +
+                        " deleted in " + lastRunDurationMs + "ms");
+                    changed.addAll(deleted);
+                    FarmerSearchService.getInstance().farmersChanged(changed);
+                }
+                return upserted;
+
+            } catch (SQLException | RuntimeException e) {
+                runsFailed.incrementAndGet();
+                lastError = e.getMessage();
+                LogUtil.error(CLASS_NAME, e, "Index sync failed, watermark stays at " + watermark);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Copy one farmer into the index table now, or delete its row if the
+     * farmer is gone. Does not wait for a running sync: one that read the
+     * farmer before the change may write the older copy back, and the next
+     * sync corrects it since the change is newer than that run's watermark.
+     *
+     * @param id Farmer index ID
+     * @return true if the farmer exists
+     */
+    public boolean syncFarmer(String id) throws SQLException {
+        try (Connection conn = getDataSource().getConnection()) {
+            String product = conn.getMetaData().getDatabaseProductName().toLowerCase();
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement select = conn.prepareStatement(SOURCE_SELECT_ONE)) {
+                select.setString(1, id);
+                try (ResultSet rs = select.executeQuery()) {
+                    boolean exists = rs.next();
+                    if (!exists || !hasNativeUpsert(product)) {
+                        try (PreparedStatement delete = conn.prepareStatement(
+                                "DELETE FROM " + TARGET_TABLE + " WHERE id = ?")) {
+                            delete.setString(1, id);
+                            if (delete.executeUpdate() > 0 && !exists) {
+                                rowsDeleted.incrementAndGet();
+                            }
+                        }
+                    }
+                    if (exists) {
+                        try (PreparedStatement upsert = conn.prepareStatement(buildUpsertSql(product))) {
+                            bindUpsert(upsert, rs, new Timestamp(System.currentTimeMillis()));
+                            upsert.executeUpdate();
+                        }
+                        rowsUpserted.incrementAndGet();
+                    }
+                    conn.commit();
+                    return exists;
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * Copy changed farmers in keyset chunks, one batch and commit per chunk
+     */
+    private int copyChanged(Connection conn, Timestamp since, List<String> changedIds) throws SQLException {
+        String selectSql = SOURCE_SELECT + (since != null ? CHANGED_SINCE : "") + " ORDER BY bi.id";
+        String product = conn.getMetaData().getDatabaseProductName().toLowerCase();
+        String upsertSql = buildUpsertSql(product);
+        boolean deleteFirst = !hasNativeUpsert(product);
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        int total = 0;
+        String lastId = "";
+
+        try (PreparedStatement select = conn.prepareStatement(selectSql);
+             PreparedStatement upsert = conn.prepareStatement(upsertSql);
+             PreparedStatement delete = deleteFirst ?
+                 conn.prepareStatement("DELETE FROM " + TARGET_TABLE + " WHERE id = ?") : null) {
+
+            select.setMaxRows(CHUNK_SIZE);
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+
+            while (true) {
+                select.setString(1, lastId);
+                if (since != null) {
+                    select.setTimestamp(2, since);
+                    select.setTimestamp(3, since);
+                    select.setTimestamp(4, since);
+                }
+
+                int chunkRows = 0;
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        String id = rs.getString("id");
+                        if (delete != null) {
+                            delete.setString(1, id);
+                            delete.addBatch();
+                        }
+                        bindUpsert(upsert, rs, now);
+                        upsert.addBatch();
+                        changedIds.add(id);
+                        lastId = id;
+                        chunkRows++;
+                    }
+                }
+                if (chunkRows == 0) {
+                    break;
+                }
+
+                if (delete != null) {
+                    delete.executeBatch();
+                }
+                upsert.executeBatch();
+                conn.commit();
+                total += chunkRows;
+                rowsUpserted.addAndGet(chunkRows);
+
+                if (chunkRows < CHUNK_SIZE) {
+                    break;
+                }
+            }
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return total;
+    }
+
+    /**
+     * Delete index rows whose farmer (or its registry parent) is gone, in keyset chunks
+     */
+    private void sweepDeleted(Connection conn, List<String> deletedIds) throws SQLException {
+        String orphanSql = "SELECT fsi.id FROM " + TARGET_TABLE + " fsi " +
+            "LEFT JOIN app_fd_farmerBasicInfo bi ON bi.id = fsi.id " +
+            "LEFT JOIN app_fd_farms_registry fr ON bi.c_parent_id = fr.id " +
+            "WHERE fsi.id > ? AND (bi.id IS NULL OR fr.id IS NULL) ORDER BY fsi.id";
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        String lastId = "";
+
+        try (PreparedStatement select = conn.prepareStatement(orphanSql);
+             PreparedStatement delete = conn.prepareStatement("DELETE FROM " + TARGET_TABLE + " WHERE id = ?")) {
+
+            select.setMaxRows(CHUNK_SIZE);
+            while (true) {
+                select.setString(1, lastId);
+                int chunkRows = 0;
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        lastId = rs.getString(1);
+                        delete.setString(1, lastId);
+                        delete.addBatch();
+                        deletedIds.add(lastId);
+                        chunkRows++;
+                    }
+                }
+                if (chunkRows == 0) {
+                    break;
+                }
+                delete.executeBatch();
+                conn.commit();
+                rowsDeleted.addAndGet(chunkRows);
+                if (chunkRows < CHUNK_SIZE) {
+                    break;
+                }
+            }
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static boolean isMySql(String product) {
+        return product.contains("mysql") || product.contains("mariadb");
+    }
+
+    private static boolean hasNativeUpsert(String product) {
+        return isMySql(product) || product.contains("postgres");
+    }
+
+    /**
+     * Build the dialect-specific upsert statement
+     *
+     * @param product Lowercased database product name
+     */
+    private String buildUpsertSql(String product) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(TARGET_TABLE).append(" (");
+        sql.append(String.join(", ", TARGET_COLUMNS)).append(") VALUES (");
+        for (int i = 0; i < TARGET_COLUMNS.length; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(")");
+
+        if (isMySql(product)) {
+            sql.append(" ON DUPLICATE KEY UPDATE ");
+            for (int i = 1; i < TARGET_COLUMNS.length; i++) {
+                sql.append(i == 1 ? "" : ", ").append(TARGET_COLUMNS[i])
+                    .append(" = VALUES(").append(TARGET_COLUMNS[i]).append(")");
+            }
+        } else if (product.contains("postgres")) {
+            sql.append(" ON CONFLICT (id) DO UPDATE SET ");
+            for (int i = 1; i < TARGET_COLUMNS.length; i++) {
+                sql.append(i == 1 ? "" : ", ").append(TARGET_COLUMNS[i])
+                    .append(" = EXCLUDED.").append(TARGET_COLUMNS[i]);
+            }
+        }
+        // Other databases: plain insert, preceded by a batched delete of the same ids
+        return sql.toString();
+    }
+
+    /**
+     * Bind one source row to the upsert, deriving the search columns
+     * the same way populate-index.sql does
+     */
+    private void bindUpsert(PreparedStatement ps, ResultSet rs, Timestamp now) throws SQLException {
+        String firstName = rs.getString("c_first_name");
+        String lastName = rs.getString("c_last_name");
+        String nationalId = rs.getString("c_national_id");
+        String mobile = rs.getString("c_mobile_number");
+        String phoneNormalized = mobile != null ? fuzzyService.normalizePhone(mobile) : "";
+        String district = coalesce(rs.getString("c_district"));
+        String village = coalesce(rs.getString("c_village"));
+        String council = coalesce(rs.getString("c_communityCouncil"));
+        String districtName = rs.getString("district_name");
+        String cooperative = rs.getString("c_cooperative_name");
+
+        String searchName = (coalesce(firstName).trim() + " " + coalesce(lastName).trim()).trim().toLowerCase();
+        String searchText = String.join(" ", coalesce(nationalId), coalesce(firstName).trim(),
+            coalesce(lastName).trim(), phoneNormalized, coalesce(districtName), village, council,
+            coalesce(cooperative)).toLowerCase();
+
+        int i = 1;
+        ps.setString(i++, rs.getString("id"));
+        ps.setString(i++, searchName);
+        ps.setString(i++, searchText);
+        ps.setString(i++, fuzzyService.generateFullNameSoundex(firstName, lastName));
+        ps.setString(i++, coalesce(nationalId));
+        ps.setString(i++, phoneNormalized);
+        ps.setString(i++, district);
+        ps.setString(i++, village);
+        ps.setString(i++, council);
+        ps.setString(i++, coalesce(firstName));
+        ps.setString(i++, coalesce(lastName));
+        ps.setString(i++, rs.getString("c_gender"));
+        java.sql.Date dateOfBirth = parseDate(rs.getString("c_date_of_birth"));
+        if (dateOfBirth != null) {
+            ps.setDate(i++, dateOfBirth);
+        } else {
+            ps.setNull(i++, Types.DATE);
+        }
+        ps.setString(i++, mobile);
+        ps.setString(i++, districtName);
+        ps.setString(i++, cooperative);
+        ps.setString(i++, rs.getString("source_record_id"));
+        ps.setTimestamp(i, now);
+    }
+
+    /**
+     * Joget form columns are text; keep ISO dates, drop anything else
+     */
+    private static java.sql.Date parseDate(String value) {
+        if (value == null || value.length() < 10) {
+            return null;
+        }
+        try {
+            return java.sql.Date.valueOf(value.substring(0, 10));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String coalesce(String value) {
+        return value != null ? value : "";
+    }
+
+    /**
+     * Database clock, so the watermark is comparable with dateModified
+     */
+    private Timestamp databaseTime(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT CURRENT_TIMESTAMP");
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getTimestamp(1);
+        }
+    }
+
+    // =========================================================================
+    // WATERMARK
+    // =========================================================================
+
+    private File getWatermarkFile() {
+        return new File(SetupManager.getBaseDirectory(), WATERMARK_PATH);
+    }
+
+    private void loadWatermark() {
+        if (watermarkLoaded) {
+            return;
+        }
+        watermarkLoaded = true;
+
+        File file = getWatermarkFile();
+        if (!file.isFile()) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+            String value = properties.getProperty("watermark");
+            if (value != null) {
+                watermark = new Timestamp(Long.parseLong(value));
+            }
+        } catch (IOException | NumberFormatException e) {
+            LogUtil.warn(CLASS_NAME, "Ignoring unreadable sync watermark, next run is a full sync: " + e.getMessage());
+        }
+    }
+
+    private void saveWatermark() {
+        File file = getWatermarkFile();
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory()) {
+            directory.mkdirs();
+        }
+        Properties properties = new Properties();
+        properties.setProperty("watermark", Long.toString(watermark.getTime()));
+        try (OutputStream out = new FileOutputStream(file)) {
+            properties.store(out, "Smart Farmer Search index sync watermark (epoch ms, database time)");
+        } catch (IOException e) {
+            LogUtil.warn(CLASS_NAME, "Could not save sync watermark: " + e.getMessage());
+        }
+    }
+
+    // =========================================================================
+    // STATUS
+    // =========================================================================
+
+    public long getIntervalMinutes() { return intervalMinutes; }
+    public long getRowsUpserted() { return rowsUpserted.get(); }
+    public long getRowsDeleted() { return rowsDeleted.get(); }
+    public long getRunsCompleted() { return runsCompleted.get(); }
+    public long getRunsFailed() { return runsFailed.get(); }
+    public long getLastRunAt() { return lastRunAt; }
+    public long getLastRunDurationMs() { return lastRunDurationMs; }
+    public int getLastRunRows() { return lastRunRows; }
+    public String getLastError() { return lastError; }
+
+    /**
+     * Watermark of the last completed run (epoch ms, database time; 0 before the first run)
+     */
+    public long getWatermark() {
+        Timestamp current = watermark;
+        return current != null ? current.getTime() : 0;
+    }
+
+    /**
+     * How far the index trails the source tables: time since the last
+     * completed run's watermark (-1 before the first run)
+     */
+    public long getLagMs() {
+        Timestamp current = watermark;
+        return current != null ? System.currentTimeMillis() - current.getTime() : -1;
+    }
+
+    /**
+     * Rows per second of the last run
+     */
+    public double getLastRunThroughput() {
+        long duration = lastRunDurationMs;
+        return duration > 0 ? lastRunRows * 1000.0 / duration : 0.0;
+    }
+
+    private DataSource getDataSource() {
+        return (DataSource) AppUtil.getApplicationContext().getBean("setupDataSource");
+    }
+}
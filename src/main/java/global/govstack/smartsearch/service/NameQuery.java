@@ -0,0 +1,52 @@
+package global.govstack.smartsearch.service;
+
+/**
+ * Name Query
+ *
+ * A search name compiled once per request for relevance scoring:
+ * the case-folded query, its whitespace-separated tokens, and each token's
+ * Soundex code packed into an int (see FuzzyMatchService.soundexKey).
+ *
+ * Scoring a candidate then needs no splitting, case folding or Soundex
+ * computation on the query side.
+ */
+public final class NameQuery {
+
+    private final String normalized;
+    private final String[] tokens;
+    private final int[] tokenSoundexKeys;
+
+    NameQuery(String normalized, String[] tokens, int[] tokenSoundexKeys) {
+        this.normalized = normalized;
+        this.tokens = tokens;
+        this.tokenSoundexKeys = tokenSoundexKeys;
+    }
+
+    /**
+     * Lowercased, trimmed query
+     */
+    public String getNormalized() {
+        return normalized;
+    }
+
+    /**
+     * Number of query tokens
+     */
+    public int getTokenCount() {
+        return tokens.length;
+    }
+
+    /**
+     * Lowercased query token
+     */
+    public String getToken(int index) {
+        return tokens[index];
+    }
+
+    /**
+     * Packed Soundex key of a query token
+     */
+    public int getTokenSoundexKey(int index) {
+        return tokenSoundexKeys[index];
+    }
+}
@@ -0,0 +1,267 @@
+package global.govstack.smartsearch.service;
+
+import global.govstack.smartsearch.service.FarmerSearchService.SearchCriteria;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * Query Templates
+ *
+ * Criteria SQL compiled once per relation and criteria shape: a bitmask
+ * of which optional criteria are set. Every search with the same shape runs the
+ * same SQL text, so the shared connection's statement cache and the
+ * driver's per-connection cache (PostgreSQL server-side prepare, MySQL
+ * cachePrepStmts) keep reusing one parsed statement per shape instead of
+ * seeing a new string for each search.
+ *
+ * A template holds the SQL and the value binders for its parameters, in
+ * order; the caller binds anything in its own suffix (LIMIT, cursor) at
+ * the index returned by bind().
+ *
+ * Name search is not one OR of mixed predicates, which the planner can
+ * only answer by scanning; each NameBranch is a separate template whose
+ * single predicate a trigram (GIN) index can serve.
+ */
+public class QueryTemplates {
+
+    // Shape bits, one per optional criterion
+    static final int DISTRICT_CODE = 1;
+    static final int DISTRICT_NAME = 1 << 1;
+    static final int VILLAGE = 1 << 2;
+    static final int COUNCIL = 1 << 3;
+    static final int PARTIAL_ID = 1 << 4;
+    static final int PARTIAL_PHONE = 1 << 5;
+    static final int COOPERATIVE = 1 << 6;
+    private static final int SHAPES = 1 << 10;  // Filter bits plus one NameBranch bit
+
+    /**
+     * Name search branches, queried separately and merged by the caller
+     */
+    enum NameBranch {
+        // Normalized name anywhere in the search name
+        CONTAINS(1 << 7, " AND c_search_name LIKE ?"),
+        // Soundex codes of the name parts
+        PHONETIC(1 << 8, " AND c_name_soundex LIKE ?"),
+        // pg_trgm similarity above pg_trgm.similarity_threshold (default 0.3)
+        // to first or last name (finds "Tabo" when searching "Thabo")
+        TRIGRAM(1 << 9, " AND (LOWER(c_first_name) % ? OR LOWER(c_last_name) % ?)");
+
+        final int bit;
+        final String clause;
+
+        NameBranch(int bit, String clause) {
+            this.bit = bit;
+            this.clause = clause;
+        }
+    }
+
+    private final String columns;
+    private final String suffix;
+    private final Map<String, AtomicReferenceArray<Template>> templatesByTable = new ConcurrentHashMap<>();
+
+    // Counters
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param columns Select list
+     * @param suffix SQL after the criteria clauses (e.g. " LIMIT ?")
+     */
+    QueryTemplates(String columns, String suffix) {
+        this.columns = columns;
+        this.suffix = suffix;
+    }
+
+    /**
+     * Shape of a criteria: the bits of the filter clauses its query needs.
+     * Name searches add the bit of one NameBranch per query.
+     */
+    static int shapeOf(SearchCriteria criteria) {
+        int shape = 0;
+        if (isNotEmpty(criteria.getDistrictCode())) shape |= DISTRICT_CODE;
+        if (isNotEmpty(criteria.getDistrictName())) shape |= DISTRICT_NAME;
+        if (isNotEmpty(criteria.getVillage())) shape |= VILLAGE;
+        if (isNotEmpty(criteria.getCommunityCouncil())) shape |= COUNCIL;
+        if (SubstringIndex.Fragment.parse(criteria.getPartialId(), false) != null) shape |= PARTIAL_ID;
+        if (SubstringIndex.Fragment.parse(criteria.getPartialPhone(), true) != null) shape |= PARTIAL_PHONE;
+        if (isNotEmpty(criteria.getCooperative())) shape |= COOPERATIVE;
+        return shape;
+    }
+
+    /**
+     * Template for a shape over a view or table, compiled on first use
+     */
+    Template get(String table, int shape) {
+        AtomicReferenceArray<Template> templates =
+            templatesByTable.computeIfAbsent(table, t -> new AtomicReferenceArray<>(SHAPES));
+        Template template = templates.get(shape);
+        if (template != null) {
+            hits.incrementAndGet();
+            return template;
+        }
+        misses.incrementAndGet();
+        // A racing compile builds an identical template; keep whichever landed first
+        templates.compareAndSet(shape, null, compile(table, shape));
+        return templates.get(shape);
+    }
+
+    private Template compile(String table, int shape) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(columns)
+            .append(" FROM ").append(table).append(" WHERE 1=1");
+        List<Function<SearchCriteria, String>> values = new ArrayList<>();
+
+        // District filter - match code OR name, case-insensitive
+        // Supports both district code (e.g., "LEI") and district name (e.g., "Leribe", "leribe")
+        if ((shape & (DISTRICT_CODE | DISTRICT_NAME)) != 0) {
+            List<String> districtConditions = new ArrayList<>();
+            if ((shape & DISTRICT_CODE) != 0) {
+                districtConditions.add("LOWER(c_district_code) = LOWER(?)");
+                districtConditions.add("LOWER(c_district_name) = LOWER(?)");
+                values.add(c -> c.getDistrictCode().trim());
+                values.add(c -> c.getDistrictCode().trim());
+            }
+            if ((shape & DISTRICT_NAME) != 0) {
+                districtConditions.add("LOWER(c_district_code) = LOWER(?)");
+                districtConditions.add("LOWER(c_district_name) = LOWER(?)");
+                values.add(c -> c.getDistrictName().trim());
+                values.add(c -> c.getDistrictName().trim());
+            }
+            sql.append(" AND (").append(String.join(" OR ", districtConditions)).append(")");
+        }
+
+        // Village filter - case-insensitive
+        if ((shape & VILLAGE) != 0) {
+            sql.append(" AND LOWER(c_village) = LOWER(?)");
+            values.add(c -> c.getVillage().trim());
+        }
+
+        // Community council filter
+        if ((shape & COUNCIL) != 0) {
+            sql.append(" AND c_community_council = ?");
+            values.add(c -> c.getCommunityCouncil().trim());
+        }
+
+        // Partial ID filter ("...0123" matches the last digits only)
+        if ((shape & PARTIAL_ID) != 0) {
+            sql.append(" AND c_national_id LIKE ?");
+            values.add(c -> SubstringIndex.Fragment.parse(c.getPartialId(), false).toLikePattern());
+        }
+
+        // Partial phone filter
+        if ((shape & PARTIAL_PHONE) != 0) {
+            sql.append(" AND c_phone_normalized LIKE ?");
+            values.add(c -> SubstringIndex.Fragment.parse(c.getPartialPhone(), true).toLikePattern());
+        }
+
+        // Cooperative filter
+        if ((shape & COOPERATIVE) != 0) {
+            sql.append(" AND c_cooperative_name = ?");
+            values.add(c -> c.getCooperative().trim());
+        }
+
+        // Name search branch
+        NameBranch branch = null;
+        for (NameBranch candidate : NameBranch.values()) {
+            if ((shape & candidate.bit) != 0) {
+                branch = candidate;
+                sql.append(candidate.clause);
+            }
+        }
+
+        sql.append(suffix);
+        return new Template(sql.toString(), Collections.unmodifiableList(values), branch);
+    }
+
+    // =========================================================================
+    // STATUS
+    // =========================================================================
+
+    /**
+     * Number of templates compiled so far
+     */
+    public int getTemplateCount() {
+        int count = 0;
+        for (AtomicReferenceArray<Template> templates : templatesByTable.values()) {
+            for (int i = 0; i < SHAPES; i++) {
+                if (templates.get(i) != null) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+
+    /**
+     * Share of lookups that found a compiled template (0.0 before the first search)
+     */
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    private static boolean isNotEmpty(String s) {
+        return s != null && !s.trim().isEmpty();
+    }
+
+    /**
+     * Immutable SQL and parameter binders for one criteria shape
+     */
+    static final class Template {
+        private final String sql;
+        private final List<Function<SearchCriteria, String>> values;
+        private final NameBranch branch;
+
+        private Template(String sql, List<Function<SearchCriteria, String>> values, NameBranch branch) {
+            this.sql = sql;
+            this.values = values;
+            this.branch = branch;
+        }
+
+        String getSql() {
+            return sql;
+        }
+
+        /**
+         * @return Name branch queried by this template, or null for filters only
+         */
+        NameBranch getNameBranch() {
+            return branch;
+        }
+
+        /**
+         * Bind the criteria parameters
+         *
+         * @param searchName Normalized name (name branches only)
+         * @param searchSoundex Soundex codes of the name parts (phonetic branch only)
+         * @return Index of the first suffix parameter
+         */
+        int bind(PreparedStatement ps, SearchCriteria criteria, String searchName, String searchSoundex)
+                throws SQLException {
+            int index = 1;
+            for (Function<SearchCriteria, String> value : values) {
+                ps.setString(index++, value.apply(criteria));
+            }
+            if (branch == NameBranch.CONTAINS) {
+                ps.setString(index++, "%" + searchName + "%");
+            } else if (branch == NameBranch.PHONETIC) {
+                ps.setString(index++, "%" + searchSoundex + "%");
+            } else if (branch == NameBranch.TRIGRAM) {
+                ps.setString(index++, searchName);
+                ps.setString(index++, searchName);
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,485 @@
+package global.govstack.smartsearch.service;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Row Set
+ *
+ * Compressed bitmap of row numbers, laid out like a Roaring bitmap: rows are
+ * grouped by their high 16 bits into chunks, and each chunk is a sorted char
+ * array while it holds at most ARRAY_MAX_SIZE rows and a 65536-bit bitmap
+ * beyond that. Sparse postings (one village, one name term) cost two bytes
+ * per row, dense ones (a whole district) at most 8KB per 65536 rows, and
+ * AND / OR / AND NOT work chunk by chunk without touching individual rows
+ * of bitmap chunks.
+ *
+ * Set operations return new sets and never share chunks with their inputs.
+ * Not thread-safe; FarmerIndex mutates its postings under its write lock.
+ */
+final class RowSet {
+
+    private static final int ARRAY_MAX_SIZE = 4096;
+    private static final int BITMAP_WORDS = 1024;
+    private static final int INITIAL_CHUNKS = 4;
+
+    // Parallel chunk arrays, sorted by key (row >>> 16)
+    private char[] keys;
+    private Object[] chunks;        // char[] array chunk or long[] bitmap chunk
+    private int[] cardinalities;
+    private int chunkCount = 0;
+
+    RowSet() {
+        this(INITIAL_CHUNKS);
+    }
+
+    private RowSet(int capacity) {
+        keys = new char[capacity];
+        chunks = new Object[capacity];
+        cardinalities = new int[capacity];
+    }
+
+    // =========================================================================
+    // MUTATION
+    // =========================================================================
+
+    /**
+     * Add a row
+     *
+     * @return true if the row was not already present
+     */
+    boolean add(int row) {
+        char key = (char) (row >>> 16);
+        char low = (char) row;
+        int i = findChunk(key);
+
+        if (i < 0) {
+            char[] array = new char[4];
+            array[0] = low;
+            insertChunk(-i - 1, key, array, 1);
+            return true;
+        }
+
+        int cardinality = cardinalities[i];
+        if (chunks[i] instanceof long[]) {
+            long[] bitmap = (long[]) chunks[i];
+            long bit = 1L << low;
+            if ((bitmap[low >>> 6] & bit) != 0) {
+                return false;
+            }
+            bitmap[low >>> 6] |= bit;
+            cardinalities[i] = cardinality + 1;
+            return true;
+        }
+
+        char[] array = (char[]) chunks[i];
+        int pos = Arrays.binarySearch(array, 0, cardinality, low);
+        if (pos >= 0) {
+            return false;
+        }
+        pos = -pos - 1;
+
+        if (cardinality == ARRAY_MAX_SIZE) {
+            long[] bitmap = toBitmap(array, cardinality);
+            bitmap[low >>> 6] |= 1L << low;
+            chunks[i] = bitmap;
+        } else {
+            if (cardinality == array.length) {
+                array = Arrays.copyOf(array, Math.min(cardinality * 2, ARRAY_MAX_SIZE));
+                chunks[i] = array;
+            }
+            System.arraycopy(array, pos, array, pos + 1, cardinality - pos);
+            array[pos] = low;
+        }
+        cardinalities[i] = cardinality + 1;
+        return true;
+    }
+
+    /**
+     * Remove a row
+     *
+     * @return true if the row was present
+     */
+    boolean remove(int row) {
+        int i = findChunk((char) (row >>> 16));
+        if (i < 0) {
+            return false;
+        }
+        char low = (char) row;
+        int cardinality = cardinalities[i];
+
+        if (chunks[i] instanceof long[]) {
+            long[] bitmap = (long[]) chunks[i];
+            long bit = 1L << low;
+            if ((bitmap[low >>> 6] & bit) == 0) {
+                return false;
+            }
+            bitmap[low >>> 6] &= ~bit;
+            cardinality--;
+            if (cardinality <= ARRAY_MAX_SIZE) {
+                chunks[i] = toArray(bitmap, cardinality);
+            }
+        } else {
+            char[] array = (char[]) chunks[i];
+            int pos = Arrays.binarySearch(array, 0, cardinality, low);
+            if (pos < 0) {
+                return false;
+            }
+            System.arraycopy(array, pos + 1, array, pos, cardinality - pos - 1);
+            cardinality--;
+        }
+
+        if (cardinality == 0) {
+            removeChunk(i);
+        } else {
+            cardinalities[i] = cardinality;
+        }
+        return true;
+    }
+
+    // =========================================================================
+    // QUERIES
+    // =========================================================================
+
+    boolean contains(int row) {
+        int i = findChunk((char) (row >>> 16));
+        if (i < 0) {
+            return false;
+        }
+        char low = (char) row;
+        if (chunks[i] instanceof long[]) {
+            return (((long[]) chunks[i])[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) chunks[i], 0, cardinalities[i], low) >= 0;
+    }
+
+    int cardinality() {
+        int total = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            total += cardinalities[i];
+        }
+        return total;
+    }
+
+    boolean isEmpty() {
+        return chunkCount == 0;
+    }
+
+    /**
+     * Iterate rows in ascending order
+     */
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Forward-only row iterator
+     */
+    final class Cursor {
+        private int chunk = 0;
+        private int position = -1;  // Array index or bit number within the current chunk
+
+        /**
+         * @return Next row, or -1 when exhausted
+         */
+        int next() {
+            while (chunk < chunkCount) {
+                int base = keys[chunk] << 16;
+                if (chunks[chunk] instanceof char[]) {
+                    if (++position < cardinalities[chunk]) {
+                        return base | ((char[]) chunks[chunk])[position];
+                    }
+                } else {
+                    long[] bitmap = (long[]) chunks[chunk];
+                    int from = position + 1;
+                    if (from < 1 << 16) {
+                        int word = from >>> 6;
+                        long bits = bitmap[word] & (-1L << from);
+                        while (true) {
+                            if (bits != 0) {
+                                position = (word << 6) + Long.numberOfTrailingZeros(bits);
+                                return base | position;
+                            }
+                            if (++word == BITMAP_WORDS) {
+                                break;
+                            }
+                            bits = bitmap[word];
+                        }
+                    }
+                }
+                chunk++;
+                position = -1;
+            }
+            return -1;
+        }
+    }
+
+    // =========================================================================
+    // SET OPERATIONS
+    // =========================================================================
+
+    /**
+     * Rows in both sets
+     */
+    static RowSet and(RowSet a, RowSet b) {
+        RowSet result = new RowSet(Math.max(Math.min(a.chunkCount, b.chunkCount), 1));
+        int i = 0;
+        int j = 0;
+        while (i < a.chunkCount && j < b.chunkCount) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Object x = a.chunks[i];
+                Object y = b.chunks[j];
+                if (x instanceof char[] && y instanceof char[]) {
+                    result.appendArray(a.keys[i], intersect((char[]) x, a.cardinalities[i], (char[]) y, b.cardinalities[j]));
+                } else if (x instanceof char[]) {
+                    result.appendArray(a.keys[i], filter((char[]) x, a.cardinalities[i], (long[]) y, true));
+                } else if (y instanceof char[]) {
+                    result.appendArray(a.keys[i], filter((char[]) y, b.cardinalities[j], (long[]) x, true));
+                } else {
+                    long[] bx = (long[]) x;
+                    long[] by = (long[]) y;
+                    long[] bitmap = new long[BITMAP_WORDS];
+                    for (int w = 0; w < BITMAP_WORDS; w++) {
+                        bitmap[w] = bx[w] & by[w];
+                    }
+                    result.appendBitmap(a.keys[i], bitmap);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Rows in a but not in b
+     */
+    static RowSet andNot(RowSet a, RowSet b) {
+        RowSet result = new RowSet(Math.max(a.chunkCount, 1));
+        int j = 0;
+        for (int i = 0; i < a.chunkCount; i++) {
+            while (j < b.chunkCount && b.keys[j] < a.keys[i]) {
+                j++;
+            }
+            if (j == b.chunkCount || b.keys[j] != a.keys[i]) {
+                result.appendChunk(a.keys[i], a.copyChunk(i), a.cardinalities[i]);
+                continue;
+            }
+
+            Object x = a.chunks[i];
+            Object y = b.chunks[j];
+            if (x instanceof char[] && y instanceof char[]) {
+                result.appendArray(a.keys[i], subtract((char[]) x, a.cardinalities[i], (char[]) y, b.cardinalities[j]));
+            } else if (x instanceof char[]) {
+                result.appendArray(a.keys[i], filter((char[]) x, a.cardinalities[i], (long[]) y, false));
+            } else {
+                long[] bitmap = ((long[]) x).clone();
+                if (y instanceof char[]) {
+                    char[] array = (char[]) y;
+                    for (int k = 0; k < b.cardinalities[j]; k++) {
+                        bitmap[array[k] >>> 6] &= ~(1L << array[k]);
+                    }
+                } else {
+                    long[] by = (long[]) y;
+                    for (int w = 0; w < BITMAP_WORDS; w++) {
+                        bitmap[w] &= ~by[w];
+                    }
+                }
+                result.appendBitmap(a.keys[i], bitmap);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Rows in any of the sets. Each chunk key is accumulated in one bitmap,
+     * so a union of many small postings costs one pass over their rows.
+     */
+    static RowSet union(List<RowSet> sets) {
+        int maxKey = -1;
+        for (RowSet set : sets) {
+            if (set.chunkCount > 0) {
+                maxKey = Math.max(maxKey, set.keys[set.chunkCount - 1]);
+            }
+        }
+        if (maxKey < 0) {
+            return new RowSet();
+        }
+
+        long[][] bitmaps = new long[maxKey + 1][];
+        int chunkKeys = 0;
+        for (RowSet set : sets) {
+            for (int i = 0; i < set.chunkCount; i++) {
+                long[] bitmap = bitmaps[set.keys[i]];
+                if (bitmap == null) {
+                    bitmap = new long[BITMAP_WORDS];
+                    bitmaps[set.keys[i]] = bitmap;
+                    chunkKeys++;
+                }
+                if (set.chunks[i] instanceof char[]) {
+                    char[] array = (char[]) set.chunks[i];
+                    for (int k = 0; k < set.cardinalities[i]; k++) {
+                        bitmap[array[k] >>> 6] |= 1L << array[k];
+                    }
+                } else {
+                    long[] other = (long[]) set.chunks[i];
+                    for (int w = 0; w < BITMAP_WORDS; w++) {
+                        bitmap[w] |= other[w];
+                    }
+                }
+            }
+        }
+
+        RowSet result = new RowSet(chunkKeys);
+        for (int key = 0; key <= maxKey; key++) {
+            if (bitmaps[key] != null) {
+                result.appendBitmap((char) key, bitmaps[key]);
+            }
+        }
+        return result;
+    }
+
+    // =========================================================================
+    // CHUNK HELPERS
+    // =========================================================================
+
+    private int findChunk(char key) {
+        return Arrays.binarySearch(keys, 0, chunkCount, key);
+    }
+
+    private void insertChunk(int index, char key, Object chunk, int cardinality) {
+        if (chunkCount == keys.length) {
+            int capacity = Math.max(keys.length * 2, INITIAL_CHUNKS);
+            keys = Arrays.copyOf(keys, capacity);
+            chunks = Arrays.copyOf(chunks, capacity);
+            cardinalities = Arrays.copyOf(cardinalities, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, chunkCount - index);
+        System.arraycopy(chunks, index, chunks, index + 1, chunkCount - index);
+        System.arraycopy(cardinalities, index, cardinalities, index + 1, chunkCount - index);
+        keys[index] = key;
+        chunks[index] = chunk;
+        cardinalities[index] = cardinality;
+        chunkCount++;
+    }
+
+    private void removeChunk(int index) {
+        int moved = chunkCount - index - 1;
+        System.arraycopy(keys, index + 1, keys, index, moved);
+        System.arraycopy(chunks, index + 1, chunks, index, moved);
+        System.arraycopy(cardinalities, index + 1, cardinalities, index, moved);
+        chunkCount--;
+        chunks[chunkCount] = null;
+    }
+
+    /**
+     * Append a chunk with a key above every existing key. Empty chunks are dropped.
+     */
+    private void appendChunk(char key, Object chunk, int cardinality) {
+        if (cardinality > 0) {
+            insertChunk(chunkCount, key, chunk, cardinality);
+        }
+    }
+
+    private void appendArray(char key, char[] array) {
+        appendChunk(key, array, array.length);
+    }
+
+    /**
+     * Append a bitmap chunk, converting it to an array chunk if it is sparse
+     */
+    private void appendBitmap(char key, long[] bitmap) {
+        int cardinality = 0;
+        for (long word : bitmap) {
+            cardinality += Long.bitCount(word);
+        }
+        appendChunk(key, cardinality <= ARRAY_MAX_SIZE ? toArray(bitmap, cardinality) : bitmap, cardinality);
+    }
+
+    private Object copyChunk(int index) {
+        if (chunks[index] instanceof char[]) {
+            return Arrays.copyOf((char[]) chunks[index], cardinalities[index]);
+        }
+        return ((long[]) chunks[index]).clone();
+    }
+
+    private static long[] toBitmap(char[] array, int cardinality) {
+        long[] bitmap = new long[BITMAP_WORDS];
+        for (int k = 0; k < cardinality; k++) {
+            bitmap[array[k] >>> 6] |= 1L << array[k];
+        }
+        return bitmap;
+    }
+
+    private static char[] toArray(long[] bitmap, int cardinality) {
+        char[] array = new char[cardinality];
+        int n = 0;
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+            long bits = bitmap[w];
+            while (bits != 0) {
+                array[n++] = (char) ((w << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Sorted intersection of two array chunks
+     */
+    private static char[] intersect(char[] x, int nx, char[] y, int ny) {
+        char[] out = new char[Math.min(nx, ny)];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < nx && j < ny) {
+            if (x[i] < y[j]) {
+                i++;
+            } else if (x[i] > y[j]) {
+                j++;
+            } else {
+                out[n++] = x[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Sorted difference of two array chunks
+     */
+    private static char[] subtract(char[] x, int nx, char[] y, int ny) {
+        char[] out = new char[nx];
+        int n = 0;
+        int j = 0;
+        for (int i = 0; i < nx; i++) {
+            while (j < ny && y[j] < x[i]) {
+                j++;
+            }
+            if (j == ny || y[j] != x[i]) {
+                out[n++] = x[i];
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Array chunk rows that are (keep = true) or are not (keep = false) set in a bitmap chunk
+     */
+    private static char[] filter(char[] array, int cardinality, long[] bitmap, boolean keep) {
+        char[] out = new char[cardinality];
+        int n = 0;
+        for (int k = 0; k < cardinality; k++) {
+            boolean set = (bitmap[array[k] >>> 6] & (1L << array[k])) != 0;
+            if (set == keep) {
+                out[n++] = array[k];
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
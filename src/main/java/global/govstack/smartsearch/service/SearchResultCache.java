@@ -0,0 +1,258 @@
+package global.govstack.smartsearch.service;
+
+import global.govstack.smartsearch.service.FarmerSearchService.SearchCriteria;
+import global.govstack.smartsearch.service.FarmerSearchService.SearchResult;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Search Result Cache
+ *
+ * Bounded LRU cache of search results keyed on canonicalized criteria:
+ * values are trimmed, those matched case-insensitively (name, district,
+ * village) are also case-folded, names have whitespace collapsed and phone
+ * numbers are reduced to digits, so "Ha Matala " and "ha matala" share an
+ * entry. Exact-match values (national ID, community council, cooperative,
+ * partial ID) keep their case, as the queries behind them do.
+ *
+ * Each entry carries its own expiry time and the district/village it was
+ * filtered on. When a farmer changes, only entries whose district or village
+ * matches the farmer's (old or new) location are dropped; entries without a
+ * location filter could contain any farmer and are dropped on every change.
+ */
+public class SearchResultCache {
+
+    private final int maxEntries;
+    private volatile long ttlMs;
+
+    private final LinkedHashMap<String, Entry> entries;
+
+    // Counters
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // Bumped by every invalidation so a search that started earlier cannot cache a stale result
+    private final AtomicLong generation = new AtomicLong();
+
+    SearchResultCache(int maxEntries, long ttlMs) {
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > SearchResultCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // =========================================================================
+    // CACHE OPERATIONS
+    // =========================================================================
+
+    /**
+     * Get a cached result
+     *
+     * @param criteria Search criteria
+     * @return Cached result, or null on miss or expiry
+     */
+    SearchResult get(SearchCriteria criteria) {
+        String key = canonicalKey(criteria);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+                entries.remove(key);
+                expirations.incrementAndGet();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.result;
+        }
+    }
+
+    /**
+     * Current invalidation generation; read before running the search being cached
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Cache a result unless an invalidation happened since the search started
+     *
+     * @param criteria Search criteria
+     * @param result Search result
+     * @param startGeneration Value of getGeneration() before the search ran
+     */
+    void put(SearchCriteria criteria, SearchResult result, long startGeneration) {
+        Entry entry = new Entry(result, System.currentTimeMillis() + ttlMs,
+            districtOf(criteria), fold(criteria.getVillage()));
+        synchronized (entries) {
+            if (generation.get() != startGeneration) {
+                return;
+            }
+            entries.put(canonicalKey(criteria), entry);
+        }
+    }
+
+    /**
+     * Drop entries that could include a farmer at the given location.
+     * District matches either the code or the name, like the search filter.
+     *
+     * @param districtCode Farmer district code (may be null)
+     * @param districtName Farmer district name (may be null)
+     * @param village Farmer village (may be null)
+     */
+    void invalidate(String districtCode, String districtName, String village) {
+        String code = fold(districtCode);
+        String name = fold(districtName);
+        String villageKey = fold(village);
+
+        synchronized (entries) {
+            generation.incrementAndGet();
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                boolean affected;
+                if (entry.district == null && entry.village == null) {
+                    affected = true;
+                } else {
+                    affected = (entry.district == null ||
+                                entry.district.equals(code) || entry.district.equals(name)) &&
+                               (entry.village == null || entry.village.equals(villageKey));
+                }
+                if (affected) {
+                    it.remove();
+                    invalidations.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop every entry
+     */
+    void invalidateAll() {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            invalidations.addAndGet(entries.size());
+            entries.clear();
+        }
+    }
+
+    void setTtlMs(long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    // =========================================================================
+    // STATUS
+    // =========================================================================
+
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getMaxEntries() { return maxEntries; }
+    public long getTtlMs() { return ttlMs; }
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getEvictions() { return evictions.get(); }
+    public long getExpirations() { return expirations.get(); }
+    public long getInvalidations() { return invalidations.get(); }
+
+    /**
+     * Hit rate over all lookups (0.0 when nothing was looked up yet)
+     */
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    // =========================================================================
+    // KEY CANONICALIZATION
+    // =========================================================================
+
+    /**
+     * Build the canonical key for criteria
+     */
+    static String canonicalKey(SearchCriteria criteria) {
+        StringBuilder key = new StringBuilder(96);
+        key.append("nid=").append(trim(criteria.getNationalId()));
+        key.append("|ph=").append(digits(criteria.getPhone()));
+        key.append("|nm=").append(foldName(criteria.getName()));
+        key.append("|d=").append(districtOf(criteria));
+        key.append("|v=").append(fold(criteria.getVillage()));
+        key.append("|cc=").append(trim(criteria.getCommunityCouncil()));
+        key.append("|pid=").append(trim(criteria.getPartialId()));
+        key.append("|pph=").append(SubstringIndex.Fragment.parse(criteria.getPartialPhone(), true));
+        key.append("|co=").append(trim(criteria.getCooperative()));
+        key.append("|l=").append(criteria.getLimit());
+        return key.toString();
+    }
+
+    /**
+     * District filter value (code takes precedence, both are matched against code and name)
+     */
+    private static String districtOf(SearchCriteria criteria) {
+        String code = fold(criteria.getDistrictCode());
+        return code != null ? code : fold(criteria.getDistrictName());
+    }
+
+    private static String trim(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static String fold(String value) {
+        String trimmed = trim(value);
+        return trimmed != null ? trimmed.toLowerCase() : null;
+    }
+
+    private static String foldName(String value) {
+        String folded = fold(value);
+        return folded != null ? folded.replaceAll("\\s+", " ") : null;
+    }
+
+    private static String digits(String value) {
+        if (value == null) {
+            return null;
+        }
+        String digits = value.replaceAll("[^0-9]", "");
+        return digits.isEmpty() ? null : digits;
+    }
+
+    /**
+     * Cached result with its expiry and location tags
+     */
+    private static final class Entry {
+        private final SearchResult result;
+        private final long expiresAt;
+        private final String district;
+        private final String village;
+
+        Entry(SearchResult result, long expiresAt, String district, String village) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+            this.district = district;
+            this.village = village;
+        }
+    }
+}
@@ -8,8 +8,15 @@ import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Statistics Service
@@ -22,7 +29,23 @@ import java.util.concurrent.ConcurrentHashMap;
  * - Village average size
  * - Effectiveness factors
  * 
- * Statistics are cached in memory with a 24-hour TTL.
+ * Statistics are cached in memory with a 24-hour TTL. Readers always get
+ * the current snapshot without waiting (only the very first request waits
+ * for the first computation). The snapshot is recomputed off-peak each
+ * night, at OFF_PEAK_HOUR plus random jitter so nodes do not all query at
+ * once, and in the background when a reader finds it stale. At most one
+ * computation runs at a time, and a failed one keeps the last good snapshot.
+ * 
+ * Between full computations the node that computed keeps the counts as
+ * live counters: farmers created, changed or deleted (farmersChanged) are
+ * re-read in batches and their old counts taken back, and a new snapshot
+ * is published, so the nightly computation only reconciles drift.
+ * 
+ * Snapshots are saved to app_fd_farmer_search_stats (see StatisticsStore),
+ * so a restarted node serves the saved snapshot instead of recomputing on
+ * its first request. Across a cluster, a refresh first adopts a fresh
+ * snapshot saved by another node; otherwise only the node holding the
+ * refresh lease computes, and the others keep serving their snapshot.
  */
 public class StatisticsService {
 
@@ -31,25 +54,71 @@ public class StatisticsService {
     // Cache TTL: 24 hours in milliseconds
     private static final long CACHE_TTL_MS = 24 * 60 * 60 * 1000;
     
-    // View name for farmer search
-    private static final String INDEX_TABLE = "v_farmer_search";
+    // Nightly refresh: local hour, random delay on top, and wait before retrying a failed refresh
+    private static final int OFF_PEAK_HOUR = 2;
+    private static final long MAX_JITTER_MINUTES = 60;
+    private static final long RETRY_DELAY_MS = 5 * 60 * 1000L;
+    
+    // Refresh lease across nodes, and wait before checking again for another node's snapshot
+    private static final long LEASE_MS = 30 * 60 * 1000L;
+    private static final long PEER_WAIT_MS = 60 * 1000L;
     
     // Top N names to include in frequency maps
     private static final int TOP_NAME_COUNT = 100;
     
+    // Counted columns, in Tally.add order
+    private static final String SCAN_COLUMNS = "c_district_code, LOWER(c_last_name), LOWER(c_first_name), c_village";
+    
+    // Rows per round trip of the statistics scan
+    private static final int SCAN_FETCH_SIZE = 10000;
+    
+    // Live counters: farmer changes are applied in batches after a short delay,
+    // read CHANGE_READ_CHUNK per query; larger batches are reconciled by a full scan
+    private static final long CHANGE_APPLY_DELAY_MS = 30 * 1000L;
+    private static final int CHANGE_READ_CHUNK = 500;
+    private static final int MAX_LIVE_CHANGES = 5000;
+    
     // Default frequency for names not in top list
     private static final double DEFAULT_SURNAME_FREQUENCY = 0.0002;
     private static final double DEFAULT_FIRSTNAME_FREQUENCY = 0.0003;
     
+    // Snapshot sources
+    private static final String SOURCE_COMPUTED = "computed";
+    private static final String SOURCE_PERSISTED = "persisted";
+    private static final String SOURCE_LIVE = "live";
+    
     // Singleton instance
     private static StatisticsService instance;
     
-    // Cached statistics
-    private Statistics cachedStatistics;
-    private long cacheTimestamp = 0;
+    // Current snapshot, replaced whole by each successful refresh (null until the first)
+    private volatile Snapshot snapshot;
     
-    // Lock for thread safety
-    private final Object cacheLock = new Object();
+    // Persisted snapshots, loaded once on first use
+    private final StatisticsStore store = new StatisticsStore(Long.toHexString(ThreadLocalRandom.current().nextLong()));
+    private final Object loadLock = new Object();
+    private boolean persistedLoaded = false;
+    private volatile long lastPersistedAt = 0;
+    
+    // Single-flight refresh: the running computation, if any
+    private final Object refreshLock = new Object();
+    private CompletableFuture<Snapshot> refreshInFlight;
+    private ScheduledExecutorService refreshExecutor;
+    private volatile long nextScheduledRefreshAt = 0;
+    
+    // Live counters from this node's last full computation (null while serving a
+    // loaded or adopted snapshot); only read and changed on the refresh thread
+    private volatile Tally live;
+    private final Set<String> pendingChanges = ConcurrentHashMap.newKeySet();
+    private boolean changeApplyScheduled = false;
+    private final AtomicLong liveChangesApplied = new AtomicLong();
+    private volatile long lastReconcileAt = 0;
+    
+    // Refresh status
+    private final AtomicLong refreshFailures = new AtomicLong();
+    private volatile long lastRefreshDurationMs = 0;
+    private volatile long lastFailureAt = 0;
+    private volatile long retryNotBefore = 0;
+    private volatile String lastError;
     
     private StatisticsService() {
         // Private constructor for singleton
@@ -67,51 +136,36 @@ public class StatisticsService {
     // =========================================================================
     
     /**
-     * Get current statistics (from cache or freshly computed if stale)
+     * Get current statistics without waiting for a refresh. A stale snapshot
+     * is returned as is and refreshed in the background.
      * 
      * @return Statistics object
      */
     public Statistics getStatistics() {
-        synchronized (cacheLock) {
-            if (cachedStatistics == null || isStale()) {
-                LogUtil.info(CLASS_NAME, "Statistics cache miss or stale, refreshing...");
-                refreshStatistics();
-            }
-            return cachedStatistics;
+        Snapshot current = snapshot;
+        if (current == null) {
+            current = loadPersisted();
         }
+        boolean retryDue = System.currentTimeMillis() >= retryNotBefore;
+        if (current == null) {
+            // Nothing to serve yet: wait for the first computation (defaults while the database fails)
+            return retryDue ? awaitRefresh(false) : createDefaultStatistics();
+        }
+        if (isStale() && retryDue) {
+            triggerRefresh(false);
+        }
+        return current.statistics;
     }
     
     /**
-     * Force refresh statistics (bypass cache)
+     * Force refresh statistics (bypass cache and persisted snapshots).
+     * Joins a refresh already running instead of starting another, and
+     * keeps the current statistics while another node holds the refresh lease.
      * 
-     * @return Freshly computed Statistics object
+     * @return Freshly computed statistics, or the last good ones if the refresh failed
      */
     public Statistics refreshStatistics() {
-        synchronized (cacheLock) {
-            try {
-                long startTime = System.currentTimeMillis();
-                LogUtil.info(CLASS_NAME, "Starting statistics computation...");
-                
-                Statistics stats = computeStatistics();
-                
-                cachedStatistics = stats;
-                cacheTimestamp = System.currentTimeMillis();
-                
-                long elapsed = System.currentTimeMillis() - startTime;
-                LogUtil.info(CLASS_NAME, "Statistics computed in " + elapsed + "ms");
-                
-                return stats;
-                
-            } catch (Exception e) {
-                LogUtil.error(CLASS_NAME, e, "Failed to compute statistics");
-                
-                // Return a default statistics object if computation fails
-                if (cachedStatistics == null) {
-                    cachedStatistics = createDefaultStatistics();
-                }
-                return cachedStatistics;
-            }
-        }
+        return awaitRefresh(true);
     }
     
     /**
@@ -120,7 +174,11 @@ public class StatisticsService {
      * @return true if stale
      */
     public boolean isStale() {
-        return (System.currentTimeMillis() - cacheTimestamp) > CACHE_TTL_MS;
+        return isStale(snapshot);
+    }
+    
+    private static boolean isStale(Snapshot current) {
+        return current == null || (System.currentTimeMillis() - current.computedAt) > CACHE_TTL_MS;
     }
     
     /**
@@ -129,155 +187,474 @@ public class StatisticsService {
      * @return Age of cache in ms, or -1 if never computed
      */
     public long getCacheAgeMs() {
-        if (cacheTimestamp == 0) {
+        Snapshot current = snapshot;
+        if (current == null) {
             return -1;
         }
-        return System.currentTimeMillis() - cacheTimestamp;
+        return System.currentTimeMillis() - current.computedAt;
+    }
+    
+    /**
+     * Stop scheduled refreshes (bundle stop)
+     */
+    public void shutdown() {
+        synchronized (refreshLock) {
+            if (refreshExecutor != null) {
+                refreshExecutor.shutdownNow();
+                refreshExecutor = null;
+            }
+            // Release readers waiting on a refresh that will not run
+            if (refreshInFlight != null) {
+                refreshInFlight.completeExceptionally(new IllegalStateException("Statistics service stopped"));
+                refreshInFlight = null;
+            }
+            changeApplyScheduled = false;
+        }
+        live = null;
+        pendingChanges.clear();
+    }
+    
+    public boolean isRefreshing() {
+        synchronized (refreshLock) {
+            return refreshInFlight != null;
+        }
+    }
+    
+    public long getRefreshFailures() { return refreshFailures.get(); }
+    public long getLastRefreshDurationMs() { return lastRefreshDurationMs; }
+    public long getLastFailureAt() { return lastFailureAt; }
+    public String getLastError() { return lastError; }
+    public long getNextScheduledRefreshAt() { return nextScheduledRefreshAt; }
+    public long getLastPersistedAt() { return lastPersistedAt; }
+    public boolean isLive() { return live != null; }
+    public long getLiveChangesApplied() { return liveChangesApplied.get(); }
+    public int getPendingChanges() { return pendingChanges.size(); }
+    public long getLastReconcileAt() { return lastReconcileAt; }
+    
+    /**
+     * Where the current snapshot came from: "computed" here, "live" (computed
+     * here and updated since), "persisted" (saved earlier or by another
+     * node), or null before the first
+     */
+    public String getSnapshotSource() {
+        Snapshot current = snapshot;
+        return current != null ? current.source : null;
     }
     
     // =========================================================================
-    // STATISTICS COMPUTATION
+    // REFRESH
     // =========================================================================
     
     /**
-     * Compute all statistics from the database
+     * Start a background refresh unless one is already running
+     * 
+     * @param force Compute even if another node saved a fresh snapshot
+     * @return The running refresh
      */
-    private Statistics computeStatistics() throws Exception {
-        Statistics stats = new Statistics();
-        stats.setVersion("1.0");
-        stats.setGeneratedAt(new Date());
-        
-        DataSource ds = getDataSource();
-        
-        try (Connection conn = ds.getConnection()) {
-            // Total farmers
-            int totalFarmers = computeTotalFarmers(conn);
-            stats.setTotalFarmers(totalFarmers);
+    private CompletableFuture<Snapshot> triggerRefresh(boolean force) {
+        synchronized (refreshLock) {
+            CompletableFuture<Snapshot> running = refreshInFlight;
+            if (running == null) {
+                running = new CompletableFuture<>();
+                refreshInFlight = running;
+                CompletableFuture<Snapshot> refresh = running;
+                getRefreshExecutor().execute(() -> runRefresh(refresh, force));
+            }
+            return running;
+        }
+    }
+    
+    /**
+     * Wait for a refresh (starting one if needed)
+     * 
+     * @return The new statistics, else the last good ones, else defaults
+     */
+    private Statistics awaitRefresh(boolean force) {
+        try {
+            return triggerRefresh(force).join().statistics;
+        } catch (Exception e) {
+            Snapshot current = snapshot;
+            return current != null ? current.statistics : createDefaultStatistics();
+        }
+    }
+    
+    private void runRefresh(CompletableFuture<Snapshot> refresh, boolean force) {
+        boolean leased = false;
+        try {
+            // Another node may have computed fresher statistics already (unless ours are live)
+            if (!force && live == null && adoptPersisted()) {
+                refresh.complete(snapshot);
+                return;
+            }
             
-            if (totalFarmers == 0) {
-                LogUtil.warn(CLASS_NAME, "No farmers in database, returning default statistics");
-                return createDefaultStatistics();
+            leased = acquireLease();
+            Snapshot current = snapshot;
+            if (!leased && current != null) {
+                retryNotBefore = System.currentTimeMillis() + PEER_WAIT_MS;
+                LogUtil.info(CLASS_NAME, "Statistics are being computed by another node, keeping the current snapshot");
+                refresh.complete(current);
+                return;
             }
             
-            // District counts
-            Map<String, Integer> districtCounts = computeDistrictCounts(conn);
-            stats.setDistrictCounts(districtCounts);
+            long startTime = System.currentTimeMillis();
+            LogUtil.info(CLASS_NAME, "Starting statistics computation...");
             
-            // Surname frequency
-            Map<String, Double> surnameFreq = computeNameFrequency(conn, "c_last_name", totalFarmers);
-            surnameFreq.put("_default", DEFAULT_SURNAME_FREQUENCY);
-            stats.setSurnameFrequency(surnameFreq);
+            Tally tally = computeTally();
+            Snapshot computed = new Snapshot(buildStatistics(tally), System.currentTimeMillis(), SOURCE_COMPUTED);
+            live = tally;
+            lastReconcileAt = computed.computedAt;
+            snapshot = computed;
+            lastRefreshDurationMs = System.currentTimeMillis() - startTime;
+            lastError = null;
+            LogUtil.info(CLASS_NAME, "Statistics computed in " + lastRefreshDurationMs + "ms");
+            refresh.complete(computed);
             
-            // Firstname frequency
-            Map<String, Double> firstnameFreq = computeNameFrequency(conn, "c_first_name", totalFarmers);
-            firstnameFreq.put("_default", DEFAULT_FIRSTNAME_FREQUENCY);
-            stats.setFirstnameFrequency(firstnameFreq);
+            // Readers already have the new snapshot; save it for restarts and other nodes
+            persist(computed, leased);
             
-            // Village average size
-            int villageAvgSize = computeVillageAverageSize(conn);
-            stats.setVillageAvgSize(villageAvgSize);
+        } catch (Throwable e) {
+            refreshFailures.incrementAndGet();
+            lastFailureAt = System.currentTimeMillis();
+            retryNotBefore = lastFailureAt + RETRY_DELAY_MS;
+            lastError = e.getMessage();
+            LogUtil.error(CLASS_NAME, e, "Failed to compute statistics, keeping the last snapshot");
+            refresh.completeExceptionally(e);
+            if (leased) {
+                releaseLease();
+            }
             
-            // Effectiveness factors (pre-computed estimates)
-            Map<String, Double> factors = computeEffectivenessFactors(conn, totalFarmers, districtCounts, villageAvgSize);
-            stats.setEffectivenessFactors(factors);
+        } finally {
+            synchronized (refreshLock) {
+                if (refreshInFlight == refresh) {
+                    refreshInFlight = null;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Refresh worker, created with the nightly schedule on first use.
+     * Call with refreshLock held.
+     */
+    private ScheduledExecutorService getRefreshExecutor() {
+        if (refreshExecutor == null) {
+            refreshExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "smart-search-statistics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduleOffPeakRefresh(refreshExecutor);
+        }
+        return refreshExecutor;
+    }
+    
+    /**
+     * Schedule the next nightly refresh at OFF_PEAK_HOUR plus jitter; each run schedules the next
+     */
+    private void scheduleOffPeakRefresh(ScheduledExecutorService executor) {
+        ZonedDateTime now = ZonedDateTime.now();
+        ZonedDateTime next = now.withHour(OFF_PEAK_HOUR).withMinute(0).withSecond(0).withNano(0);
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        long delayMs = next.toInstant().toEpochMilli() - now.toInstant().toEpochMilli() +
+            ThreadLocalRandom.current().nextLong(TimeUnit.MINUTES.toMillis(MAX_JITTER_MINUTES));
+        nextScheduledRefreshAt = System.currentTimeMillis() + delayMs;
+        
+        executor.schedule(() -> {
+            triggerRefresh(false);
+            synchronized (refreshLock) {
+                if (refreshExecutor == executor) {
+                    scheduleOffPeakRefresh(executor);
+                }
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+    
+    // =========================================================================
+    // LIVE COUNTERS
+    // =========================================================================
+    
+    /**
+     * Farmers were created, changed or deleted: apply them to the live
+     * counters in the next batch. Ignored while this node has no live
+     * counters (the next full computation picks the changes up).
+     * 
+     * @param ids Farmer index IDs
+     */
+    public void farmersChanged(Collection<String> ids) {
+        if (live == null || ids.isEmpty()) {
+            return;
+        }
+        for (String id : ids) {
+            if (id != null && !id.trim().isEmpty()) {
+                pendingChanges.add(id.trim());
+            }
+        }
+        synchronized (refreshLock) {
+            if (!changeApplyScheduled) {
+                changeApplyScheduled = true;
+                getRefreshExecutor().schedule(this::applyPendingChanges, CHANGE_APPLY_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+    
+    /**
+     * Re-read the changed farmers, replace their counts and publish a new
+     * snapshot. Runs on the refresh thread, so never during a full scan.
+     */
+    private void applyPendingChanges() {
+        synchronized (refreshLock) {
+            changeApplyScheduled = false;
+        }
+        Tally tally = live;
+        List<String> ids = new ArrayList<>(pendingChanges);
+        pendingChanges.removeAll(ids);
+        if (tally == null || ids.isEmpty()) {
+            return;
         }
         
-        return stats;
+        if (ids.size() > MAX_LIVE_CHANGES) {
+            LogUtil.info(CLASS_NAME, ids.size() + " farmer changes, recomputing statistics in full");
+            triggerRefresh(false);
+            return;
+        }
+        
+        try (Connection conn = getDataSource().getConnection()) {
+            for (int i = 0; i < ids.size(); i += CHANGE_READ_CHUNK) {
+                List<String> chunk = ids.subList(i, Math.min(i + CHANGE_READ_CHUNK, ids.size()));
+                Map<String, List<String[]>> rows = readFarmers(conn, chunk);
+                for (String id : chunk) {
+                    // Replacing a farmer's counts is idempotent, so a retried batch cannot double count
+                    tally.remove(id);
+                    for (String[] row : rows.getOrDefault(id, Collections.emptyList())) {
+                        tally.add(id, row[0], row[1], row[2], row[3]);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LogUtil.error(CLASS_NAME, e, "Could not apply " + ids.size() + " farmer changes to statistics, will retry");
+            farmersChanged(ids);
+            return;
+        }
+        
+        liveChangesApplied.addAndGet(ids.size());
+        Snapshot published = new Snapshot(buildStatistics(tally), System.currentTimeMillis(), SOURCE_LIVE);
+        snapshot = published;
+        LogUtil.debug(CLASS_NAME, "Applied " + ids.size() + " farmer changes to statistics");
+        persist(published, false);
     }
     
     /**
-     * Compute total farmer count
+     * Current rows of some farmers from the live view (a backing table or
+     * materialized view may not have the change yet)
      */
-    private int computeTotalFarmers(Connection conn) throws Exception {
-        String sql = "SELECT COUNT(*) AS total_farmers FROM " + INDEX_TABLE;
+    private Map<String, List<String[]>> readFarmers(Connection conn, List<String> ids) throws Exception {
+        StringBuilder sql = new StringBuilder("SELECT id, ").append(SCAN_COLUMNS)
+            .append(" FROM ").append(IndexBackingService.VIEW).append(" WHERE id IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(")");
         
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            if (rs.next()) {
-                return rs.getInt("total_farmers");
+        Map<String, List<String[]>> rows = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < ids.size(); i++) {
+                ps.setString(i + 1, ids.get(i));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.computeIfAbsent(rs.getString(1), k -> new ArrayList<>(1)).add(new String[] {
+                        rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5)
+                    });
+                }
             }
         }
-        return 0;
+        return rows;
     }
     
+    // =========================================================================
+    // PERSISTENCE
+    // =========================================================================
+    
     /**
-     * Compute farmer counts per district
+     * Serve the persisted snapshot until the first refresh (once per start),
+     * and schedule the nightly refresh even if no refresh is triggered now
+     * 
+     * @return The current snapshot, null if none was computed or saved yet
      */
-    private Map<String, Integer> computeDistrictCounts(Connection conn) throws Exception {
-        Map<String, Integer> counts = new LinkedHashMap<>();
-        
-        String sql = "SELECT c_district_code, COUNT(*) AS count " +
-                     "FROM " + INDEX_TABLE + " " +
-                     "WHERE c_district_code IS NOT NULL AND c_district_code != '' " +
-                     "GROUP BY c_district_code " +
-                     "ORDER BY count DESC";
-        
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                String code = rs.getString("c_district_code");
-                int count = rs.getInt("count");
-                counts.put(code, count);
+    private Snapshot loadPersisted() {
+        synchronized (loadLock) {
+            if (!persistedLoaded) {
+                persistedLoaded = true;
+                synchronized (refreshLock) {
+                    getRefreshExecutor();
+                }
+                Snapshot persisted = readPersisted();
+                if (persisted != null && snapshot == null) {
+                    snapshot = persisted;
+                    LogUtil.info(CLASS_NAME, "Loaded persisted statistics computed " +
+                        (System.currentTimeMillis() - persisted.computedAt) / 1000 + "s ago");
+                }
             }
+            return snapshot;
         }
-        
-        return counts;
     }
     
     /**
-     * Compute name frequency (for surnames or first names)
+     * Switch to the persisted snapshot if it is fresh and newer than ours
      * 
-     * @param conn Database connection
-     * @param columnName Column to analyze (c_last_name or c_first_name)
-     * @param totalFarmers Total farmer count for frequency calculation
-     * @return Map of name -> frequency (0.0 to 1.0)
+     * @return true if adopted
      */
-    private Map<String, Double> computeNameFrequency(Connection conn, String columnName, int totalFarmers) throws Exception {
-        Map<String, Double> frequencies = new LinkedHashMap<>();
+    private boolean adoptPersisted() {
+        Snapshot persisted = readPersisted();
+        Snapshot current = snapshot;
+        if (persisted == null || isStale(persisted) || (current != null && persisted.computedAt <= current.computedAt)) {
+            return false;
+        }
+        snapshot = persisted;
+        LogUtil.info(CLASS_NAME, "Using statistics saved by another node");
+        return true;
+    }
+    
+    private Snapshot readPersisted() {
+        try {
+            Statistics stats = store.load();
+            return stats != null ? new Snapshot(stats, stats.getGeneratedAt().getTime(), SOURCE_PERSISTED) : null;
+        } catch (Exception e) {
+            LogUtil.warn(CLASS_NAME, "Could not read persisted statistics: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Take the refresh lease. Computes locally (true) when the stats table
+     * cannot be used, false only while another node holds the lease.
+     */
+    private boolean acquireLease() {
+        try {
+            return store.tryAcquireLease(LEASE_MS);
+        } catch (Exception e) {
+            LogUtil.warn(CLASS_NAME, "Statistics refresh lease unavailable, computing locally: " + e.getMessage());
+            return true;
+        }
+    }
+    
+    private void releaseLease() {
+        try {
+            store.releaseLease();
+        } catch (Exception e) {
+            LogUtil.warn(CLASS_NAME, "Could not release statistics refresh lease: " + e.getMessage());
+        }
+    }
+    
+    private void persist(Snapshot computed, boolean leased) {
+        try {
+            store.save(computed.statistics, computed.computedAt);
+            lastPersistedAt = System.currentTimeMillis();
+        } catch (Exception e) {
+            LogUtil.warn(CLASS_NAME, "Could not persist statistics: " + e.getMessage());
+        }
+        if (leased) {
+            releaseLease();
+        }
+    }
+    
+    // =========================================================================
+    // STATISTICS COMPUTATION
+    // =========================================================================
+    
+    /**
+     * Count everything from the database in one scan
+     */
+    private Tally computeTally() throws Exception {
+        DataSource ds = getDataSource();
+        String table = IndexBackingService.getInstance().getSearchTable();
+        
+        try (Connection conn = ds.getConnection()) {
+            return scan(conn, table);
+        }
+    }
+    
+    /**
+     * Statistics from the counts (defaults when there are no farmers)
+     */
+    private Statistics buildStatistics(Tally tally) {
+        Statistics stats = new Statistics();
+        stats.setVersion("1.0");
+        stats.setGeneratedAt(new Date());
         
-        String sql = "SELECT LOWER(" + columnName + ") AS name, COUNT(*) AS count " +
-                     "FROM " + INDEX_TABLE + " " +
-                     "WHERE " + columnName + " IS NOT NULL AND " + columnName + " != '' " +
-                     "GROUP BY LOWER(" + columnName + ") " +
-                     "ORDER BY count DESC " +
-                     "LIMIT ?";
+        // Total farmers
+        int totalFarmers = tally.total;
+        stats.setTotalFarmers(totalFarmers);
         
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, TOP_NAME_COUNT);
-            
+        if (totalFarmers == 0) {
+            LogUtil.warn(CLASS_NAME, "No farmers in database, returning default statistics");
+            return createDefaultStatistics();
+        }
+        
+        // District counts
+        Map<String, Integer> districtCounts = tally.topCounts(tally.districts, Integer.MAX_VALUE);
+        stats.setDistrictCounts(districtCounts);
+        
+        // Surname frequency
+        Map<String, Double> surnameFreq = toFrequencies(tally.topCounts(tally.surnames, TOP_NAME_COUNT), totalFarmers);
+        surnameFreq.put("_default", DEFAULT_SURNAME_FREQUENCY);
+        stats.setSurnameFrequency(surnameFreq);
+        
+        // Firstname frequency
+        Map<String, Double> firstnameFreq = toFrequencies(tally.topCounts(tally.firstnames, TOP_NAME_COUNT), totalFarmers);
+        firstnameFreq.put("_default", DEFAULT_FIRSTNAME_FREQUENCY);
+        stats.setFirstnameFrequency(firstnameFreq);
+        
+        // Village average size
+        int villageAvgSize = tally.villageAverageSize();
+        stats.setVillageAvgSize(villageAvgSize);
+        
+        // Effectiveness factors (pre-computed estimates)
+        Map<String, Double> factors = computeEffectivenessFactors(totalFarmers, districtCounts, villageAvgSize);
+        stats.setEffectivenessFactors(factors);
+        
+        return stats;
+    }
+    
+    /**
+     * Count farmers, districts, names and villages in one forward-only scan
+     * of the view or table, instead of one aggregate query (and one scan of
+     * the view's joins) per statistic
+     */
+    private Tally scan(Connection conn, String table) throws Exception {
+        String sql = "SELECT id, " + SCAN_COLUMNS + " FROM " + table;
+        Tally tally = new Tally();
+        
+        // PostgreSQL only streams with a fetch size outside auto-commit
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (PreparedStatement ps = conn.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(SCAN_FETCH_SIZE);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    String name = rs.getString("name");
-                    int count = rs.getInt("count");
-                    double frequency = (double) count / totalFarmers;
-                    frequencies.put(name, Math.round(frequency * 10000) / 10000.0); // 4 decimal places
+                    tally.add(rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5));
                 }
             }
+        } finally {
+            conn.rollback();
+            conn.setAutoCommit(autoCommit);
         }
-        
-        return frequencies;
+        return tally;
     }
     
     /**
-     * Compute average village size
+     * Name counts to frequencies (0.0 to 1.0, 4 decimal places)
      */
-    private int computeVillageAverageSize(Connection conn) throws Exception {
-        String sql = "SELECT AVG(village_count) AS avg_size FROM (" +
-                     "  SELECT c_village, COUNT(*) AS village_count " +
-                     "  FROM " + INDEX_TABLE + " " +
-                     "  WHERE c_village IS NOT NULL AND c_village != '' " +
-                     "  GROUP BY c_village" +
-                     ") AS village_sizes";
-        
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            if (rs.next()) {
-                double avg = rs.getDouble("avg_size");
-                return (int) Math.round(avg);
-            }
+    private static Map<String, Double> toFrequencies(Map<String, Integer> counts, int totalFarmers) {
+        Map<String, Double> frequencies = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            double frequency = (double) entry.getValue() / totalFarmers;
+            frequencies.put(entry.getKey(), Math.round(frequency * 10000) / 10000.0);
         }
-        
-        return 100; // Default
+        return frequencies;
     }
     
     /**
@@ -286,10 +663,9 @@ public class StatisticsService {
      * These are estimates of how much each filter narrows down the results.
      * A factor of 0.85 means the filter removes 85% of candidates.
      */
-    private Map<String, Double> computeEffectivenessFactors(Connection conn, 
-                                                            int totalFarmers, 
+    private Map<String, Double> computeEffectivenessFactors(int totalFarmers, 
                                                             Map<String, Integer> districtCounts,
-                                                            int villageAvgSize) throws Exception {
+                                                            int villageAvgSize) {
         Map<String, Double> factors = new LinkedHashMap<>();
         
         // Village effectiveness: based on average village size
@@ -374,6 +750,143 @@ public class StatisticsService {
         return (DataSource) AppUtil.getApplicationContext().getBean("setupDataSource");
     }
     
+    /**
+     * Counts of one statistics scan, kept up to date by farmer changes
+     */
+    static final class Tally {
+        int total;
+        final Map<String, Counter> districts = new HashMap<>();
+        final Map<String, Counter> surnames = new HashMap<>(8192);
+        final Map<String, Counter> firstnames = new HashMap<>(8192);
+        final Map<String, Counter> villages = new HashMap<>(4096);
+        
+        // Counters each farmer's rows were added to, four per row (null for blank
+        // values), so a change takes back exactly what the farmer contributed
+        private final Map<String, Counter[]> contributions = new HashMap<>();
+        
+        void add(String id, String districtCode, String lastName, String firstName, String village) {
+            total++;
+            Counter[] row = {
+                count(districts, districtCode),
+                count(surnames, lastName),
+                count(firstnames, firstName),
+                count(villages, village)
+            };
+            // The view has a row per farm location, so one farmer may count more than once
+            Counter[] previous = contributions.get(id);
+            if (previous != null) {
+                Counter[] rows = Arrays.copyOf(previous, previous.length + row.length);
+                System.arraycopy(row, 0, rows, previous.length, row.length);
+                row = rows;
+            }
+            contributions.put(id, row);
+        }
+        
+        /**
+         * Take back everything counted for a farmer
+         */
+        void remove(String id) {
+            Counter[] counted = contributions.remove(id);
+            if (counted == null) {
+                return;
+            }
+            total -= counted.length / 4;
+            for (int i = 0; i < counted.length; i++) {
+                Counter counter = counted[i];
+                if (counter != null && --counter.count == 0) {
+                    column(i % 4).remove(counter.key);
+                }
+            }
+        }
+        
+        private Map<String, Counter> column(int index) {
+            switch (index) {
+                case 0: return districts;
+                case 1: return surnames;
+                case 2: return firstnames;
+                default: return villages;
+            }
+        }
+        
+        // Blank values are not counted, as the aggregate queries excluded them
+        private static Counter count(Map<String, Counter> counts, String key) {
+            if (key == null || key.isEmpty()) {
+                return null;
+            }
+            Counter counter = counts.computeIfAbsent(key, Counter::new);
+            counter.count++;
+            return counter;
+        }
+        
+        /**
+         * The n highest counts, largest first (ties by key), picked with a
+         * bounded min-heap instead of sorting every distinct key
+         */
+        Map<String, Integer> topCounts(Map<String, Counter> counts, int n) {
+            Comparator<Counter> byCount = (a, b) -> a.count != b.count
+                ? Integer.compare(a.count, b.count)
+                : b.key.compareTo(a.key);
+            PriorityQueue<Counter> heap = new PriorityQueue<>(byCount);
+            for (Counter counter : counts.values()) {
+                if (heap.size() < n) {
+                    heap.add(counter);
+                } else if (byCount.compare(counter, heap.peek()) > 0) {
+                    heap.poll();
+                    heap.add(counter);
+                }
+            }
+            
+            List<Counter> top = new ArrayList<>(heap);
+            top.sort(byCount.reversed());
+            Map<String, Integer> result = new LinkedHashMap<>();
+            for (Counter counter : top) {
+                result.put(counter.key, counter.count);
+            }
+            return result;
+        }
+        
+        /**
+         * Average farmers per village (100 when no villages are recorded)
+         */
+        int villageAverageSize() {
+            if (villages.isEmpty()) {
+                return 100;
+            }
+            long farmers = 0;
+            for (Counter counter : villages.values()) {
+                farmers += counter.count;
+            }
+            return (int) Math.round((double) farmers / villages.size());
+        }
+    }
+    
+    /**
+     * Count of one district, name or village
+     */
+    static final class Counter {
+        final String key;
+        int count;
+        
+        Counter(String key) {
+            this.key = key;
+        }
+    }
+    
+    /**
+     * Statistics with the time they were computed
+     */
+    private static final class Snapshot {
+        private final Statistics statistics;
+        private final long computedAt;
+        private final String source;
+        
+        Snapshot(Statistics statistics, long computedAt, String source) {
+            this.statistics = statistics;
+            this.computedAt = computedAt;
+            this.source = source;
+        }
+    }
+    
     // =========================================================================
     // STATISTICS MODEL CLASS
     // =========================================================================
@@ -434,5 +947,39 @@ public class StatisticsService {
             
             return json;
         }
+        
+        /**
+         * Read statistics written by toJson() (generatedAt is left to the caller)
+         */
+        public static Statistics fromJson(JSONObject json) {
+            Statistics stats = new Statistics();
+            stats.setVersion(json.optString("version", "1.0"));
+            stats.setTotalFarmers(json.optInt("total_farmers"));
+            stats.setSurnameFrequency(toDoubleMap(json.optJSONObject("surname_frequency")));
+            stats.setFirstnameFrequency(toDoubleMap(json.optJSONObject("firstname_frequency")));
+            
+            Map<String, Integer> districtCounts = new LinkedHashMap<>();
+            JSONObject districts = json.optJSONObject("district_counts");
+            if (districts != null) {
+                for (String code : districts.keySet()) {
+                    districtCounts.put(code, districts.getInt(code));
+                }
+            }
+            stats.setDistrictCounts(districtCounts);
+            
+            stats.setVillageAvgSize(json.optInt("village_avg_size", 100));
+            stats.setEffectivenessFactors(toDoubleMap(json.optJSONObject("effectiveness_factors")));
+            return stats;
+        }
+        
+        private static Map<String, Double> toDoubleMap(JSONObject json) {
+            Map<String, Double> map = new LinkedHashMap<>();
+            if (json != null) {
+                for (String key : json.keySet()) {
+                    map.put(key, json.getDouble(key));
+                }
+            }
+            return map;
+        }
     }
 }
@@ -0,0 +1,163 @@
+package global.govstack.smartsearch.service;
+
+import global.govstack.smartsearch.service.StatisticsService.Statistics;
+import org.joget.apps.app.service.AppUtil;
+import org.json.JSONObject;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Statistics Store
+ *
+ * Statistics snapshots in app_fd_farmer_search_stats, shared by every node
+ * and kept across restarts:
+ *
+ * - GLOBAL: the newest snapshot (c_stats_json) and when it was computed
+ * - GLOBAL_REFRESH_LEASE: which node is computing the next one. A node
+ *   holds the lease until c_generated_at (the lease expiry) and identifies
+ *   itself in c_version; an expired lease may be taken over by any node.
+ *
+ * Lease expiry uses the node clocks, which are assumed to agree to well
+ * within the lease duration.
+ */
+public class StatisticsStore {
+
+    static final String TABLE = "app_fd_farmer_search_stats";
+
+    private static final String SNAPSHOT_ID = "GLOBAL";
+    private static final String LEASE_ID = "GLOBAL_REFRESH_LEASE";
+
+    // Holder token written to c_version (VARCHAR(20))
+    private final String nodeId;
+
+    StatisticsStore(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    // =========================================================================
+    // SNAPSHOT
+    // =========================================================================
+
+    /**
+     * @return The persisted statistics with their generatedAt set to when
+     *         they were computed, or null if none were saved yet
+     */
+    Statistics load() throws SQLException {
+        String sql = "SELECT c_stats_json, c_generated_at FROM " + TABLE + " WHERE id = ?";
+        try (Connection conn = getDataSource().getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, SNAPSHOT_ID);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                Statistics stats = Statistics.fromJson(new JSONObject(rs.getString(1)));
+                stats.setGeneratedAt(rs.getTimestamp(2));
+                return stats;
+            }
+        }
+    }
+
+    /**
+     * Save a snapshot over the previous one
+     *
+     * @param computedAt When the statistics were computed
+     */
+    void save(Statistics stats, long computedAt) throws SQLException {
+        String json = stats.toJson().toString();
+        Timestamp generatedAt = new Timestamp(computedAt);
+        String version = stats.getVersion() != null ? stats.getVersion() : "1.0";
+
+        try (Connection conn = getDataSource().getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "UPDATE " + TABLE + " SET c_stats_json = ?, c_version = ?, c_generated_at = ?, " +
+                    "c_total_farmers = ? WHERE id = ?")) {
+                ps.setString(1, json);
+                ps.setString(2, version);
+                ps.setTimestamp(3, generatedAt);
+                ps.setInt(4, stats.getTotalFarmers());
+                ps.setString(5, SNAPSHOT_ID);
+                if (ps.executeUpdate() > 0) {
+                    return;
+                }
+            }
+            insert(conn, SNAPSHOT_ID, json, version, generatedAt, stats.getTotalFarmers());
+        }
+    }
+
+    // =========================================================================
+    // REFRESH LEASE
+    // =========================================================================
+
+    /**
+     * Take the refresh lease if it is free, expired or already ours
+     *
+     * @param leaseMs How long to hold it unless released earlier
+     * @return true if this node now holds the lease
+     */
+    boolean tryAcquireLease(long leaseMs) throws SQLException {
+        long now = System.currentTimeMillis();
+        Timestamp expiresAt = new Timestamp(now + leaseMs);
+
+        try (Connection conn = getDataSource().getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "UPDATE " + TABLE + " SET c_version = ?, c_generated_at = ? " +
+                    "WHERE id = ? AND (c_generated_at < ? OR c_version = ?)")) {
+                ps.setString(1, nodeId);
+                ps.setTimestamp(2, expiresAt);
+                ps.setString(3, LEASE_ID);
+                ps.setTimestamp(4, new Timestamp(now));
+                ps.setString(5, nodeId);
+                if (ps.executeUpdate() > 0) {
+                    return true;
+                }
+            }
+
+            // No lease row yet, or a live lease held by another node
+            try {
+                insert(conn, LEASE_ID, "{}", nodeId, expiresAt, 0);
+                return true;
+            } catch (SQLException e) {
+                // Primary key taken: the row exists and another node holds it
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Release the lease if this node still holds it
+     */
+    void releaseLease() throws SQLException {
+        try (Connection conn = getDataSource().getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                 "UPDATE " + TABLE + " SET c_generated_at = ? WHERE id = ? AND c_version = ?")) {
+            ps.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+            ps.setString(2, LEASE_ID);
+            ps.setString(3, nodeId);
+            ps.executeUpdate();
+        }
+    }
+
+    private static void insert(Connection conn, String id, String json, String version,
+                               Timestamp generatedAt, int totalFarmers) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO " + TABLE + " (id, c_stats_json, c_version, c_generated_at, c_total_farmers, " +
+                "c_district_code) VALUES (?, ?, ?, ?, ?, NULL)")) {
+            ps.setString(1, id);
+            ps.setString(2, json);
+            ps.setString(3, version);
+            ps.setTimestamp(4, generatedAt);
+            ps.setInt(5, totalFarmers);
+            ps.executeUpdate();
+        }
+    }
+
+    private DataSource getDataSource() {
+        return (DataSource) AppUtil.getApplicationContext().getBean("setupDataSource");
+    }
+}
@@ -0,0 +1,193 @@
+package global.govstack.smartsearch.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Substring Index
+ *
+ * Digit n-gram index over one column of FarmerIndex (national IDs or
+ * normalized phones) for partialId / partialPhone criteria. Every run of
+ * GRAM_LENGTH digits in a value posts the row under that gram, and the last
+ * SUFFIX_LENGTH digits post it under a suffix code, so:
+ *
+ * - "contains 12345" is the intersection of the rows of 123, 234 and 345
+ *   (a superset, verified per row by the caller)
+ * - "ends with 0123", the last four digits shown by the masked display,
+ *   is a single exact lookup
+ *
+ * Grams are dense int codes (000-999), so there is no dictionary to keep.
+ * Not thread-safe; FarmerIndex mutates it under its write lock.
+ */
+final class SubstringIndex {
+
+    static final int GRAM_LENGTH = 3;
+    static final int SUFFIX_LENGTH = 4;
+
+    private final RowSet[] gramRows = new RowSet[1000];
+    private final RowSet[] suffixRows = new RowSet[10000];
+
+    void add(int row, String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i + GRAM_LENGTH <= value.length(); i++) {
+            int gram = digitCode(value, i, GRAM_LENGTH);
+            if (gram >= 0) {
+                postings(gramRows, gram).add(row);
+            }
+        }
+        int suffix = suffixCode(value);
+        if (suffix >= 0) {
+            postings(suffixRows, suffix).add(row);
+        }
+    }
+
+    void remove(int row, String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i + GRAM_LENGTH <= value.length(); i++) {
+            int gram = digitCode(value, i, GRAM_LENGTH);
+            if (gram >= 0 && gramRows[gram] != null) {
+                gramRows[gram].remove(row);
+            }
+        }
+        int suffix = suffixCode(value);
+        if (suffix >= 0 && suffixRows[suffix] != null) {
+            suffixRows[suffix].remove(row);
+        }
+    }
+
+    /**
+     * Rows that may match the fragment
+     *
+     * @return Candidate rows (exact for a four-digit suffix), or null if the
+     *         fragment has no digit gram to look up and rows must be scanned
+     */
+    RowSet candidates(Fragment fragment) {
+        String text = fragment.getText();
+        if (fragment.isSuffix() && text.length() == SUFFIX_LENGTH) {
+            int suffix = suffixCode(text);
+            if (suffix >= 0) {
+                return suffixRows[suffix] != null ? suffixRows[suffix] : new RowSet();
+            }
+        }
+
+        List<RowSet> grams = new ArrayList<>();
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            int gram = digitCode(text, i, GRAM_LENGTH);
+            if (gram < 0) {
+                continue;
+            }
+            if (gramRows[gram] == null) {
+                return new RowSet();
+            }
+            grams.add(gramRows[gram]);
+        }
+        if (grams.isEmpty()) {
+            return null;
+        }
+
+        // Rarest gram first keeps every intersection small
+        grams.sort((a, b) -> Integer.compare(a.cardinality(), b.cardinality()));
+        RowSet rows = grams.get(0);
+        for (int i = 1; i < grams.size() && !rows.isEmpty(); i++) {
+            rows = RowSet.and(rows, grams.get(i));
+        }
+        return rows;
+    }
+
+    private static RowSet postings(RowSet[] table, int code) {
+        if (table[code] == null) {
+            table[code] = new RowSet();
+        }
+        return table[code];
+    }
+
+    private static int suffixCode(String value) {
+        return value.length() >= SUFFIX_LENGTH ?
+            digitCode(value, value.length() - SUFFIX_LENGTH, SUFFIX_LENGTH) : -1;
+    }
+
+    /**
+     * Decimal value of length digits at offset, or -1 if any of them is not a digit
+     */
+    private static int digitCode(String value, int offset, int length) {
+        int code = 0;
+        for (int i = offset; i < offset + length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            code = code * 10 + (c - '0');
+        }
+        return code;
+    }
+
+    // =========================================================================
+    // FRAGMENTS
+    // =========================================================================
+
+    /**
+     * A typed ID or phone fragment. Fragments written the way masked values
+     * are displayed ("...0123", "*0123") match the end of the value only;
+     * anything else matches anywhere in it.
+     */
+    static final class Fragment {
+        private final String text;
+        private final boolean suffix;
+
+        private Fragment(String text, boolean suffix) {
+            this.text = text;
+            this.suffix = suffix;
+        }
+
+        /**
+         * @param input Fragment as typed
+         * @param digitsOnly Drop non-digits (phones)
+         * @return Parsed fragment, or null if nothing is left to match
+         */
+        static Fragment parse(String input, boolean digitsOnly) {
+            if (input == null) {
+                return null;
+            }
+            String text = input.trim();
+            int start = 0;
+            while (start < text.length() &&
+                   (text.charAt(start) == '.' || text.charAt(start) == '*' || text.charAt(start) == '\u2026')) {
+                start++;
+            }
+            boolean suffix = start > 0;
+            text = text.substring(start).trim();
+            if (digitsOnly) {
+                text = text.replaceAll("[^0-9]", "");
+            }
+            return text.isEmpty() ? null : new Fragment(text, suffix);
+        }
+
+        boolean matches(String value) {
+            return value != null && (suffix ? value.endsWith(text) : value.contains(text));
+        }
+
+        /**
+         * Equivalent SQL LIKE pattern
+         */
+        String toLikePattern() {
+            return suffix ? "%" + text : "%" + text + "%";
+        }
+
+        String getText() {
+            return text;
+        }
+
+        boolean isSuffix() {
+            return suffix;
+        }
+
+        @Override
+        public String toString() {
+            return suffix ? "..." + text : text;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package global.govstack.smartsearch.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Top-K Selector
+ *
+ * Keeps the K highest-scoring items seen so far in a binary min-heap backed by
+ * primitive arrays (int scores, int arrival sequence, item references), so
+ * selecting K of N candidates costs O(N log K) with no per-candidate boxing.
+ *
+ * Ties keep arrival order, matching a stable descending sort: of two equal
+ * scores the earlier item ranks higher, and a later equal score never
+ * displaces a kept one.
+ *
+ * Callers that know an upper bound on the remaining scores can stop early
+ * once {@link #canAccept(int)} returns false.
+ *
+ * @param <T> Item type
+ */
+class TopKSelector<T> {
+
+    private final int k;
+    private final int[] scores;
+    private final int[] sequences;
+    private final Object[] items;
+    private int size = 0;
+    private int nextSequence = 0;
+
+    TopKSelector(int k) {
+        this.k = Math.max(k, 0);
+        this.scores = new int[this.k];
+        this.sequences = new int[this.k];
+        this.items = new Object[this.k];
+    }
+
+    /**
+     * Offer a scored item
+     *
+     * @param score Item score (higher is better)
+     * @param item Item
+     * @return true if the item is currently among the top K
+     */
+    boolean offer(int score, T item) {
+        int sequence = nextSequence++;
+        if (k == 0) {
+            return false;
+        }
+
+        if (size < k) {
+            scores[size] = score;
+            sequences[size] = sequence;
+            items[size] = item;
+            siftUp(size++);
+            return true;
+        }
+
+        // Root is the worst kept item; equal scores lose to the earlier arrival
+        if (score <= scores[0]) {
+            return false;
+        }
+        scores[0] = score;
+        sequences[0] = sequence;
+        items[0] = item;
+        siftDown(0);
+        return true;
+    }
+
+    /**
+     * Check whether an item scoring at most upperBound could still be kept
+     */
+    boolean canAccept(int upperBound) {
+        return size < k || (k > 0 && upperBound > scores[0]);
+    }
+
+    /**
+     * Number of items offered so far
+     */
+    int getOfferedCount() {
+        return nextSequence;
+    }
+
+    /**
+     * Drain the kept items, best first. The selector is empty afterwards.
+     */
+    @SuppressWarnings("unchecked")
+    List<T> toSortedList() {
+        int count = size;
+        Object[] sorted = new Object[count];
+
+        // Repeatedly remove the worst item into the tail of the output
+        for (int i = count - 1; i >= 0; i--) {
+            sorted[i] = items[0];
+            size--;
+            if (size > 0) {
+                move(size, 0);
+                siftDown(0);
+            }
+            items[size] = null;
+        }
+
+        List<T> result = new ArrayList<>(count);
+        for (Object item : sorted) {
+            result.add((T) item);
+        }
+        return result;
+    }
+
+    /**
+     * Heap order: lower score first, and for equal scores the later arrival first
+     */
+    private boolean worse(int a, int b) {
+        if (scores[a] != scores[b]) {
+            return scores[a] < scores[b];
+        }
+        return sequences[a] > sequences[b];
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!worse(index, parent)) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                return;
+            }
+            int right = left + 1;
+            int worst = right < size && worse(right, left) ? right : left;
+            if (!worse(worst, index)) {
+                return;
+            }
+            swap(index, worst);
+            index = worst;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+
+        int sequence = sequences[a];
+        sequences[a] = sequences[b];
+        sequences[b] = sequence;
+
+        Object item = items[a];
+        items[a] = items[b];
+        items[b] = item;
+    }
+
+    private void move(int from, int to) {
+        scores[to] = scores[from];
+        sequences[to] = sequences[from];
+        items[to] = items[from];
+    }
+}
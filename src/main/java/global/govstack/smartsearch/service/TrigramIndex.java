@@ -0,0 +1,180 @@
+package global.govstack.smartsearch.service;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Trigram Index
+ *
+ * Inverted index from pg_trgm style trigrams to the ids of the terms that
+ * contain them. Terms are distinct name strings with dense int ids (assigned
+ * by a FarmerIndex dictionary), so postings stay small and are appended in
+ * increasing order, i.e. every posting list is sorted.
+ *
+ * A query counts, per term, how many of its trigrams appear in the term's
+ * posting lists (count-merge). With the shared count and each term's trigram
+ * count the pg_trgm similarity follows directly:
+ *
+ *   similarity = shared / (queryTrigrams + termTrigrams - shared)
+ *
+ * This replaces the per-row similarity() predicate and works on any database.
+ *
+ * Not thread-safe: the owning FarmerIndex guards it with its read/write lock.
+ */
+class TrigramIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Packed trigram -> sorted term ids
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    // Number of distinct trigrams per term id
+    private int[] termTrigramCounts = new int[INITIAL_CAPACITY];
+    private int termCount = 0;
+
+    /**
+     * Index a new term. Term ids must be added in increasing order.
+     *
+     * @param termId Dense term id
+     * @param term Term text
+     */
+    void add(int termId, String term) {
+        long[] keys = trigramKeys(term);
+
+        if (termId >= termTrigramCounts.length) {
+            termTrigramCounts = Arrays.copyOf(termTrigramCounts, Math.max(termId + 1, termTrigramCounts.length * 2));
+        }
+        termTrigramCounts[termId] = keys.length;
+        termCount = Math.max(termCount, termId + 1);
+
+        for (long key : keys) {
+            postings.computeIfAbsent(key, k -> new Postings()).add(termId);
+        }
+    }
+
+    /**
+     * Find all terms whose trigram similarity to the query exceeds the threshold.
+     *
+     * @param query Query text
+     * @param threshold Minimum similarity (exclusive), e.g. 0.3 like pg_trgm
+     * @return Ids of matching terms
+     */
+    BitSet search(String query, double threshold) {
+        BitSet matches = new BitSet(termCount);
+        long[] keys = trigramKeys(query);
+        if (keys.length == 0) {
+            return matches;
+        }
+
+        // Count-merge the posting lists of the query trigrams
+        int[] shared = new int[termCount];
+        int[] touched = new int[64];
+        int touchedCount = 0;
+
+        for (long key : keys) {
+            Postings list = postings.get(key);
+            if (list == null) {
+                continue;
+            }
+            for (int i = 0; i < list.size; i++) {
+                int termId = list.ids[i];
+                if (shared[termId]++ == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = termId;
+                }
+            }
+        }
+
+        for (int i = 0; i < touchedCount; i++) {
+            int termId = touched[i];
+            int common = shared[termId];
+            double similarity = (double) common / (keys.length + termTrigramCounts[termId] - common);
+            if (similarity > threshold) {
+                matches.set(termId);
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * Number of distinct trigrams in the index
+     */
+    int getTrigramCount() {
+        return postings.size();
+    }
+
+    /**
+     * Extract distinct pg_trgm trigrams packed into longs (three 16-bit chars).
+     * Words are runs of letters/digits, lowercased and padded with two leading
+     * spaces and one trailing space.
+     *
+     * @param s Input string
+     * @return Sorted distinct trigram keys
+     */
+    static long[] trigramKeys(String s) {
+        if (s == null || s.isEmpty()) {
+            return new long[0];
+        }
+
+        long[] keys = new long[s.length() + 2];
+        int count = 0;
+
+        int i = 0;
+        int length = s.length();
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(s.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(s.charAt(i))) {
+                i++;
+            }
+            if (i == start) {
+                continue;
+            }
+
+            // Slide over "  word " without building the padded string
+            char c0 = ' ';
+            char c1 = ' ';
+            for (int j = start; j <= i; j++) {
+                char c2 = j < i ? Character.toLowerCase(s.charAt(j)) : ' ';
+                if (count == keys.length) {
+                    keys = Arrays.copyOf(keys, count * 2);
+                }
+                keys[count++] = ((long) c0 << 32) | ((long) c1 << 16) | c2;
+                c0 = c1;
+                c1 = c2;
+            }
+        }
+
+        // Sort and de-duplicate
+        Arrays.sort(keys, 0, count);
+        int unique = 0;
+        for (int j = 0; j < count; j++) {
+            if (unique == 0 || keys[j] != keys[unique - 1]) {
+                keys[unique++] = keys[j];
+            }
+        }
+        return Arrays.copyOf(keys, unique);
+    }
+
+    /**
+     * Growable sorted int posting list
+     */
+    private static final class Postings {
+        private int[] ids = new int[4];
+        private int size = 0;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package global.govstack.smartsearch.service.phonetic;
+
+import org.apache.commons.codec.language.DoubleMetaphone;
+
+/**
+ * Double Metaphone (Apache Commons Codec), primary and alternate codes
+ */
+public class DoubleMetaphoneEncoder implements PhoneticEncoder {
+
+    private final DoubleMetaphone doubleMetaphone = new DoubleMetaphone();
+
+    @Override
+    public String getName() {
+        return "double-metaphone";
+    }
+
+    @Override
+    public String[] encode(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return new String[0];
+        }
+
+        String primary = doubleMetaphone.doubleMetaphone(name, false);
+        String alternate = doubleMetaphone.doubleMetaphone(name, true);
+
+        if (primary == null || primary.isEmpty()) {
+            return new String[0];
+        }
+        if (alternate == null || alternate.isEmpty() || alternate.equals(primary)) {
+            return new String[] { primary };
+        }
+        return new String[] { primary, alternate };
+    }
+}
@@ -0,0 +1,25 @@
+package global.govstack.smartsearch.service.phonetic;
+
+/**
+ * Phonetic Encoder
+ *
+ * Maps a name to one or more phonetic codes; names that sound alike share
+ * at least one code. Codes are computed once per distinct name when the
+ * memory index is built and stored in integer code tables, so a query
+ * token's phonetic candidates are found with a hash probe.
+ */
+public interface PhoneticEncoder {
+
+    /**
+     * Short identifier (e.g. "soundex")
+     */
+    String getName();
+
+    /**
+     * Encode a name
+     *
+     * @param name Input name (any case)
+     * @return Phonetic codes, empty if the name has no encodable letters
+     */
+    String[] encode(String name);
+}
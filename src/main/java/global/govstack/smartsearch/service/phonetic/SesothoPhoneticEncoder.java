@@ -0,0 +1,84 @@
+package global.govstack.smartsearch.service.phonetic;
+
+/**
+ * Sesotho Phonetic Encoder
+ *
+ * Rule-based key for Sesotho names that folds spelling variants between the
+ * Lesotho and South African orthographies and common informal spellings:
+ *
+ * - Aspiration is dropped: th, ph, kh, tlh, tjh → t, p, k, tl, tj (Thabo = Tabo)
+ * - š and sh → s
+ * - l before i/u is pronounced d: li, lu → di, du (Limpho = Dimpho)
+ * - o/u before a vowel is a glide: → w (Ntsoaki = Ntswaki)
+ * - e/i before a vowel is a glide: → y (Lieketseng = Dieketseng)
+ * - Repeated letters collapse: mm, ll, aa → m, l, a (Mmamosa = Mamosa)
+ *
+ * Vowels are kept: Sesotho names are vowel-heavy and dropping them merges
+ * too many unrelated names.
+ */
+public class SesothoPhoneticEncoder implements PhoneticEncoder {
+
+    @Override
+    public String getName() {
+        return "sesotho";
+    }
+
+    @Override
+    public String[] encode(String name) {
+        if (name == null) {
+            return new String[0];
+        }
+
+        // Letters only, lowercased, š spelled out
+        StringBuilder letters = new StringBuilder(name.length() + 2);
+        for (int i = 0; i < name.length(); i++) {
+            char c = Character.toLowerCase(name.charAt(i));
+            if (c == 'š') {
+                letters.append("sh");
+            } else if (c >= 'a' && c <= 'z') {
+                letters.append(c);
+            }
+        }
+        if (letters.length() == 0) {
+            return new String[0];
+        }
+
+        StringBuilder key = new StringBuilder(letters.length());
+        int length = letters.length();
+
+        for (int i = 0; i < length; i++) {
+            char c = letters.charAt(i);
+            char next = i + 1 < length ? letters.charAt(i + 1) : 0;
+
+            // Drop aspiration / sh marker
+            if (c == 'h' && i > 0) {
+                char previous = letters.charAt(i - 1);
+                if (previous == 't' || previous == 'p' || previous == 'k' || previous == 's' ||
+                    (previous == 'j' && i > 1 && letters.charAt(i - 2) == 't') ||
+                    (previous == 'l' && i > 1 && letters.charAt(i - 2) == 't')) {
+                    continue;
+                }
+            }
+
+            if (c == 'l' && (next == 'i' || next == 'u')) {
+                c = 'd';
+            } else if ((c == 'o' || c == 'u') && i > 0 && isVowel(next)) {
+                c = 'w';
+            } else if ((c == 'e' || c == 'i') && i > 0 && isVowel(next)) {
+                c = 'y';
+            }
+
+            // Collapse repeats
+            if (key.length() > 0 && key.charAt(key.length() - 1) == c) {
+                continue;
+            }
+            key.append(c);
+        }
+
+        return new String[] { key.toString() };
+    }
+
+    private static boolean isVowel(char c) {
+        return c == 'a' || c == 'e' || c == 'i' || c == 'o' || c == 'u';
+    }
+}
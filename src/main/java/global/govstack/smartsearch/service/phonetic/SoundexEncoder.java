@@ -0,0 +1,28 @@
+package global.govstack.smartsearch.service.phonetic;
+
+import global.govstack.smartsearch.service.FuzzyMatchService;
+
+/**
+ * Classic 4-character Soundex, delegating to FuzzyMatchService.soundex
+ */
+public class SoundexEncoder implements PhoneticEncoder {
+
+    private final FuzzyMatchService fuzzyService;
+
+    public SoundexEncoder(FuzzyMatchService fuzzyService) {
+        this.fuzzyService = fuzzyService;
+    }
+
+    @Override
+    public String getName() {
+        return "soundex";
+    }
+
+    @Override
+    public String[] encode(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return new String[0];
+        }
+        return new String[] { fuzzyService.soundex(name) };
+    }
+}
@@ -3,6 +3,8 @@
 -- 
 -- This script populates the farmer_search_index table from source tables.
 -- Run as a scheduled job (nightly recommended) or manually after data changes.
+-- The API plugin's "Index Table Sync Interval" setting keeps the table current
+-- incrementally (IndexSyncService); use this script for the initial load or repair.
 --
 -- Prerequisites: DDL from smart-search-ddl.sql must be executed first.
 -- ============================================================================